@@ -0,0 +1,51 @@
+#!/bin/sh
+# Compares throughput and p99 latency of the API with platform threads vs virtual threads.
+#
+# Requirements: a built jar (mvn package), a migrated Postgres reachable with the usual DB_* variables,
+# and oha >= 1.5 (https://github.com/hatoo/oha) and jq on the PATH.
+#
+# The target URLs ask for pages of the global listing after random cursors. Those pages are never cached, so
+# every request is read on its request thread from the database: this is the path where the database bulkhead
+# (DB_MAX_CONCURRENCY / DB_MAX_QUEUED) matters. Listings by date would instead go through the few cache loader
+# threads (POSTS_LOADER_THREADS), which would be measured in its place.
+#
+# Usage: bench/loadtest.sh [duration] [connections]
+set -eu
+
+DURATION=${1:-30s}
+CONNECTIONS=${2:-200}
+JAR=${JAR:-target/motd-0.1.0.jar}
+PORT=7000
+OUT=bench/results
+URLS=$OUT/loadtest-urls.txt
+
+: "${JWT_SECRET:=loadtest-secret}"
+export JWT_SECRET
+mkdir -p "$OUT"
+
+# cursors are base64url("<epoch seconds>:<nanos>:<id>"), spread over 2020-2026
+jq -rn 'range(10000) | "\(1577836800 + (. * 7919 % 220000000)):0:\(. * 104729 % 1000000 + 1)" | @base64' \
+    | sed -e 's/+/-/g' -e 's#/#_#g' -e 's/=*$//' -e "s|^|http://localhost:$PORT/posts?cursor=|" > "$URLS"
+
+run() {
+    mode=$1
+    USE_VIRTUAL_THREADS=$2 java -jar "$JAR" > "$OUT/server-$mode.log" 2>&1 &
+    pid=$!
+    trap 'kill $pid 2>/dev/null' EXIT
+    until curl -s -o /dev/null "http://localhost:$PORT/posts"; do sleep 1; done
+
+    oha --no-tui -z "$DURATION" -c "$CONNECTIONS" --urls-from-file --output-format json "$URLS" > "$OUT/loadtest-$mode.json"
+
+    kill $pid
+    wait $pid 2>/dev/null || true
+    trap - EXIT
+}
+
+run platform false
+run virtual true
+
+printf '%-10s %12s %12s %10s\n' mode req/s p99_ms 503s
+for mode in platform virtual; do
+    jq -r --arg mode "$mode" '[$mode, (.summary.requestsPerSec | floor), (.latencyPercentiles.p99 * 1000 | floor), (.statusCodeDistribution["503"] // 0)] | @tsv' \
+        "$OUT/loadtest-$mode.json" | awk '{ printf "%-10s %12s %12s %10s\n", $1, $2, $3, $4 }'
+done
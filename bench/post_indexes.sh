@@ -0,0 +1,80 @@
+#!/bin/sh
+# Seeds a scratch database with 1M posts and records EXPLAIN ANALYZE plans and timings of the post queries,
+# before and after the V2 index migration.
+#
+# Requirements: psql on the PATH and a Postgres server reachable with the standard PG* variables
+# (PGHOST, PGPORT, PGUSER, PGPASSWORD); the user must be allowed to create databases.
+# The scratch database (BENCH_DB, default motd_bench) is dropped and recreated on every run.
+#
+# Usage: bench/post_indexes.sh [posts] [users]
+set -eu
+
+POSTS=${1:-1000000}
+USERS=${2:-1000}
+DB=${BENCH_DB:-motd_bench}
+MIGRATIONS=src/main/resources/db/migration
+OUT=bench/results
+
+mkdir -p "$OUT"
+psql -v ON_ERROR_STOP=1 -q -d postgres -c "DROP DATABASE IF EXISTS $DB" -c "CREATE DATABASE $DB"
+
+PSQL="psql -v ON_ERROR_STOP=1 -q -d $DB"
+$PSQL -f "$MIGRATIONS/V1__init.sql"
+
+echo "Seeding $USERS users and $POSTS posts..."
+$PSQL <<SQL
+INSERT INTO users (username, password_hash)
+SELECT 'user' || i, 'x' FROM generate_series(1, $USERS) AS i;
+
+INSERT INTO posts (author_id, content, created_at, display_at)
+SELECT 1 + (i % $USERS),
+       'message of the day #' || i,
+       ts,
+       (ts + interval '1 day')::date
+FROM (
+  SELECT i, now() - (random() * interval '365 days') AS ts
+  FROM generate_series(1, $POSTS) AS i
+) AS seed;
+
+ANALYZE users;
+ANALYZE posts;
+SQL
+
+explain() {
+    phase=$1
+    file="$OUT/post_indexes-$phase.txt"
+    echo "Recording $phase plans in $file"
+    $PSQL > "$file" <<'SQL'
+\timing on
+\echo '== findByDisplayDate'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, author_id, content, created_at, display_at FROM posts
+WHERE display_at = (SELECT display_at FROM posts LIMIT 1) ORDER BY created_at DESC;
+
+\echo '== findPage (first page)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, author_id, content, created_at, display_at FROM posts
+ORDER BY created_at DESC, id DESC LIMIT 21;
+
+\echo '== findPage (keyset, deep page)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, author_id, content, created_at, display_at FROM posts
+WHERE (created_at, id) < (now() - interval '180 days', 0)
+ORDER BY created_at DESC, id DESC LIMIT 21;
+
+\echo '== delete user (ON DELETE CASCADE, rolled back)'
+BEGIN;
+EXPLAIN (ANALYZE, BUFFERS) DELETE FROM users WHERE id = 42;
+ROLLBACK;
+SQL
+}
+
+explain before
+$PSQL -f "$MIGRATIONS/V2__post_indexes.sql"
+$PSQL -c "ANALYZE posts"
+explain after
+
+for phase in before after; do
+    echo "-- $phase"
+    grep -E '^== |Trigger for constraint|Execution Time' "$OUT/post_indexes-$phase.txt"
+done
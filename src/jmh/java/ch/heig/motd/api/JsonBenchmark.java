@@ -0,0 +1,99 @@
+package ch.heig.motd.api;
+
+import ch.heig.motd.dto.Credentials;
+import ch.heig.motd.dto.PostDetailsDto;
+import ch.heig.motd.model.Post;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and encoding response bodies, and decoding request bodies.
+ * <p>
+ * The {@code map*} benchmarks are the previous way: a {@code HashMap} per post or per response, encoded or decoded
+ * through a generic mapper, as {@code ctx.json} and {@code ctx.bodyAsClass(Map.class)} did. The {@code dto*} ones use
+ * records with the cached readers and writers of {@link Json}, and {@code dtoError} the pre-encoded error body.
+ * Add {@code -prof gc} to compare allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JsonBenchmark {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectWriter LIST_WRITER = Json.writer(new TypeReference<List<PostDetailsDto>>() { });
+    private static final ObjectReader CREDENTIALS_READER = Json.reader(Credentials.class);
+
+    @Param({"20"})
+    public int posts;
+
+    private List<Post> page;
+    private byte[] credentials;
+
+    @Setup
+    public void setup() {
+        page = new ArrayList<>(posts);
+        Instant now = Instant.now();
+        for (int i = 0; i < posts; i++) {
+            page.add(new Post(i, i % 7, "Message of the day number " + i + ", with a bit of text to make it realistic.",
+                now.minusSeconds(i * 60L), LocalDate.now().plusDays(1)));
+        }
+        credentials = "{\"username\":\"alice\",\"password\":\"correct horse battery staple\"}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] mapPage() throws Exception {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Post p : page) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("id", p.getId());
+            m.put("authorId", p.getAuthorId());
+            m.put("content", p.getContent());
+            m.put("createdAt", p.getCreatedAt().toString());
+            m.put("displayAt", p.getDisplayAt().toString());
+            m.put("version", p.getVersion());
+            m.put("updatedAt", p.getUpdatedAt().toString());
+            out.add(m);
+        }
+        return MAPPER.writeValueAsBytes(out);
+    }
+
+    @Benchmark
+    public byte[] dtoPage() {
+        List<PostDetailsDto> out = new ArrayList<>(page.size());
+        for (Post p : page) out.add(PostDetailsDto.of(p));
+        return Json.encode(LIST_WRITER, out);
+    }
+
+    @Benchmark
+    public byte[] mapError() throws Exception {
+        return MAPPER.writeValueAsBytes(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.NOT_FOUND));
+    }
+
+    @Benchmark
+    public byte[] dtoError() {
+        return Json.errorBody(ApiConstants.Errors.NOT_FOUND);
+    }
+
+    @Benchmark
+    public Object mapCredentials() throws Exception {
+        return MAPPER.readValue(credentials, Map.class);
+    }
+
+    @Benchmark
+    public Object dtoCredentials() throws Exception {
+        return CREDENTIALS_READER.readValue(credentials);
+    }
+}
@@ -0,0 +1,56 @@
+package ch.heig.motd.auth;
+
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of issuing and verifying a token, done on every login and every authenticated request.
+ * <p>
+ * {@code verifyToken} measures a client sending the same token again (cache hit), {@code verifyTokenCold} the first
+ * request with a token: it cycles through many more distinct tokens than the cache holds, so every call misses and
+ * pays for the signature check, the decoding and the cache insertion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtProviderBenchmark {
+    private static final int COLD_TOKENS = JwtProvider.VERIFIED_CACHE_SIZE * 20;
+
+    private JwtProvider provider;
+    private String token;
+    private String[] coldTokens;
+    private int next;
+
+    @Setup
+    public void setup() {
+        provider = new JwtProvider(Algorithm.HMAC256("benchmark-secret"));
+        token = provider.createToken(42L, "alice", "5f0c5e8e-6d3b-4b7e-9c39-0c4a3f6f2d11");
+        coldTokens = new String[COLD_TOKENS];
+        for (int i = 0; i < COLD_TOKENS; i++) {
+            coldTokens[i] = provider.createToken(i, "user" + i, UUID.randomUUID().toString());
+        }
+    }
+
+    @Benchmark
+    public String createToken() {
+        return provider.createToken(42L, "alice", "5f0c5e8e-6d3b-4b7e-9c39-0c4a3f6f2d11");
+    }
+
+    @Benchmark
+    public DecodedJWT verifyToken() {
+        return provider.verifyToken(token);
+    }
+
+    @Benchmark
+    public DecodedJWT verifyTokenCold() {
+        String t = coldTokens[next];
+        next = next + 1 == COLD_TOKENS ? 0 : next + 1;
+        return provider.verifyToken(t);
+    }
+}
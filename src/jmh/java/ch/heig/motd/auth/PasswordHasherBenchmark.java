@@ -0,0 +1,56 @@
+package ch.heig.motd.auth;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of verifying a password (the bulk of a login) per algorithm and setting.
+ * Run a single configuration with e.g. {@code -Djmh.args="-f 1 PasswordHasher -p algorithm=pbkdf2 -p cost=310000"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class PasswordHasherBenchmark {
+    /**
+     * Algorithm, as accepted by {@link DelegatingPasswordHasher#of}.
+     */
+    @Param({"bcrypt", "pbkdf2"})
+    public String algorithm;
+
+    /**
+     * Cost: {@code default}, {@code low}, {@code high}, or an explicit BCrypt cost factor / PBKDF2 iteration count.
+     */
+    @Param({"default", "low", "high"})
+    public String cost;
+
+    private PasswordHasher hasher;
+    private String hash;
+
+    @Setup
+    public void setup() {
+        hasher = switch (algorithm) {
+            case "bcrypt" -> new BCryptPasswordHasher(switch (cost) {
+                case "low" -> 8;
+                case "high" -> 12;
+                case "default" -> BCryptPasswordHasher.DEFAULT_COST;
+                default -> Integer.parseInt(cost);
+            });
+            case "pbkdf2" -> new Pbkdf2PasswordHasher(switch (cost) {
+                case "low" -> 100_000;
+                case "high" -> 1_000_000;
+                case "default" -> Pbkdf2PasswordHasher.DEFAULT_ITERATIONS;
+                default -> Integer.parseInt(cost);
+            });
+            default -> throw new IllegalArgumentException(algorithm);
+        };
+        hash = hasher.hash("correct horse battery staple");
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return hasher.verify("correct horse battery staple", hash);
+    }
+}
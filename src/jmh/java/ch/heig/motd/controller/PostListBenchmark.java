@@ -0,0 +1,63 @@
+package ch.heig.motd.controller;
+
+import ch.heig.motd.dto.PostDetailsDto;
+import ch.heig.motd.model.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and serializing a posts listing (the cost of a cache miss in {@code PostController.list}),
+ * and checking the {@code If-None-Match} header against the entity tag of a cached body (the cost of a 304).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PostListBenchmark {
+    @Param({"20", "100"})
+    public int posts;
+
+    private List<Post> page;
+    private List<PostDetailsDto> dtos;
+    private CachedBody body;
+    private String ifNoneMatch;
+
+    @Setup
+    public void setup() {
+        page = new ArrayList<>(posts);
+        Instant now = Instant.now();
+        for (int i = 0; i < posts; i++) {
+            page.add(new Post(i, i % 7, "Message of the day number " + i + ", with a bit of text to make it realistic.",
+                now.minusSeconds(i * 60L), LocalDate.now().plusDays(1)));
+        }
+        dtos = PostController.toDtos(page);
+        body = PostController.encode(dtos);
+        ifNoneMatch = "\"stale\", W/" + body.etag();
+    }
+
+    @Benchmark
+    public List<PostDetailsDto> buildDtos() {
+        return PostController.toDtos(page);
+    }
+
+    @Benchmark
+    public CachedBody encode() {
+        return PostController.encode(dtos);
+    }
+
+    @Benchmark
+    public CachedBody buildDtosAndEncode() {
+        return PostController.encode(PostController.toDtos(page));
+    }
+
+    @Benchmark
+    public boolean ifNoneMatch() {
+        return CachedBody.matches(ifNoneMatch, body.etag());
+    }
+}
@@ -0,0 +1,90 @@
+package ch.heig.motd.repository;
+
+import ch.heig.motd.db.DbConfig;
+import ch.heig.motd.model.NewPost;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating a week of posts one request at a time ({@code PostgresPostRepository.save}, one connection checkout and
+ * round trip per post) against a single {@code saveAll}.
+ * <p>
+ * Needs a migrated database, reached with the same environment variables as the api ({@code JDBC_DATABASE_URL} or
+ * {@code DB_HOST}, {@code DB_NAME}...). A throwaway user is created for the run and deleted, with its posts, at the end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PostInsertBenchmark {
+    @Param({"1000"})
+    public int posts;
+
+    private DataSource ds;
+    private PostgresPostRepository repository;
+    private long authorId;
+    private List<NewPost> batch;
+
+    @Setup
+    public void setup() throws SQLException {
+        ds = DbConfig.createFromEnv();
+        repository = new PostgresPostRepository(ds);
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement("INSERT INTO users(username, password_hash) VALUES (?, 'x') RETURNING id")) {
+            ps.setString(1, "jmh-" + System.nanoTime());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                authorId = rs.getLong(1);
+            }
+        }
+        batch = new ArrayList<>(posts);
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        for (int i = 0; i < posts; i++) {
+            batch.add(new NewPost("Message of the day number " + i + ", with a bit of text to make it realistic.", tomorrow.plusDays(i % 7)));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deletePosts() throws SQLException {
+        execute("DELETE FROM posts WHERE author_id = ?");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        execute("DELETE FROM users WHERE id = ?");
+        if (ds instanceof HikariDataSource hikari) hikari.close();
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, authorId);
+            ps.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    public int single() {
+        int created = 0;
+        for (NewPost post : batch) {
+            repository.save(authorId, post.content());
+            created++;
+        }
+        return created;
+    }
+
+    @Benchmark
+    public int batch() {
+        return repository.saveAll(authorId, batch).size();
+    }
+}
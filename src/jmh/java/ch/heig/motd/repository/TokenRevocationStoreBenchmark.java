@@ -0,0 +1,105 @@
+package ch.heig.motd.repository;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Revocation lookups, done on every authenticated request, with many threads and concurrent logouts.
+ * <p>
+ * {@code impl=compact} is {@link TokenRevocationStore}; {@code impl=map} is the previous String-keyed
+ * {@code ConcurrentHashMap<String, Instant>} store, kept here as a baseline. Add {@code -prof gc} to compare
+ * allocations per operation. Lookups reuse the very String instances that were revoked, which favours the map (cached
+ * hash code, identity equality) over the compact store, which parses every jti.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TokenRevocationStoreBenchmark {
+    @Param({"100000"})
+    public int revocations;
+
+    @Param({"compact", "map"})
+    public String impl;
+
+    private TokenStore store;
+    private String[] revoked;
+    private String[] active;
+
+    @Setup
+    public void setup() {
+        store = impl.equals("compact") ? new TokenRevocationStore() : new MapTokenStore();
+        revoked = new String[revocations];
+        active = new String[1024];
+        Instant until = Instant.now().plusSeconds(3600);
+        for (int i = 0; i < revocations; i++) {
+            revoked[i] = UUID.randomUUID().toString();
+            store.revoke(revoked[i], until);
+        }
+        for (int i = 0; i < active.length; i++) active[i] = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean isRevoked_miss() {
+        return store.isRevoked(active[ThreadLocalRandom.current().nextInt(active.length)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean isRevoked_hit() {
+        return store.isRevoked(revoked[ThreadLocalRandom.current().nextInt(revoked.length)]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(7)
+    public boolean contended_isRevoked() {
+        return store.isRevoked(active[ThreadLocalRandom.current().nextInt(active.length)]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contended_revoke() {
+        store.revoke(UUID.randomUUID().toString(), Instant.now().plusSeconds(3600));
+    }
+
+    /**
+     * Baseline: revocations in a String-keyed map, expired lazily on lookup.
+     */
+    static final class MapTokenStore implements TokenStore {
+        private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+
+        @Override
+        public void revoke(String jti, Instant until) {
+            revoked.put(jti, until);
+        }
+
+        @Override
+        public boolean isRevoked(String jti) {
+            Instant exp = revoked.get(jti);
+            if (exp == null) return false;
+            if (exp.isBefore(Instant.now())) {
+                revoked.remove(jti);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachActive(Instant revokedSince, BiConsumer<String, Instant> action) {
+            // revocation times are not tracked: visit every active revocation
+            Instant now = Instant.now();
+            revoked.forEach((jti, until) -> { if (until.isAfter(now)) action.accept(jti, until); });
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ch.heig.motd.service;
+
+import ch.heig.motd.auth.JwtProvider;
+import ch.heig.motd.repository.TokenRevocationStore;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the authentication check run by the middleware on every mutating request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuthServiceBenchmark {
+    private AuthServiceImpl authService;
+    private String validToken;
+    private String revokedToken;
+
+    @Setup
+    public void setup() {
+        JwtProvider provider = new JwtProvider(Algorithm.HMAC256("benchmark-secret"));
+        TokenRevocationStore store = new TokenRevocationStore();
+        authService = new AuthServiceImpl(null, store, provider);
+        validToken = provider.createToken(42L, "alice", UUID.randomUUID().toString());
+        String revokedJti = UUID.randomUUID().toString();
+        revokedToken = provider.createToken(42L, "alice", revokedJti);
+        store.revoke(revokedJti, Instant.now().plusSeconds(3600));
+    }
+
+    @Benchmark
+    public Optional<DecodedJWT> validateAndGetClaims_valid() {
+        return authService.validateAndGetClaims(validToken);
+    }
+
+    @Benchmark
+    public Optional<DecodedJWT> validateAndGetClaims_revoked() {
+        return authService.validateAndGetClaims(revokedToken);
+    }
+}
@@ -16,12 +16,15 @@ public final class ApiConstants {
         private Paths() {}
         public static final String AUTH = "/auth";
         public static final String POSTS = "/posts";
+        public static final String METRICS = "/metrics";
 
         public static final String AUTH_REGISTER = AUTH + "/register";
         public static final String AUTH_LOGIN = AUTH + "/login";
         public static final String AUTH_LOGOUT = AUTH + "/logout";
         public static final String AUTH_DELETE = AUTH + "/delete";
         public static final String POST_WITH_ID = POSTS + "/{id}";
+        public static final String POSTS_BATCH = POSTS + "/batch";
+        public static final String POSTS_EXPORT = POSTS + "/export";
     }
 
     /**
@@ -34,6 +37,18 @@ public final class ApiConstants {
         public static final String CONTENT = "content";
         public static final String TOKEN = "token";
         public static final String ERROR = "error";
+        public static final String POSTS = "posts";
+        public static final String NEXT = "next";
+    }
+
+    /**
+     * Holds every query parameter used in the API.
+     */
+    public static final class Params {
+        private Params() {}
+        public static final String DATE = "date";
+        public static final String CURSOR = "cursor";
+        public static final String LIMIT = "limit";
     }
 
     /**
@@ -42,6 +57,13 @@ public final class ApiConstants {
     public static final class Headers {
         private Headers() {}
         public static final String AUTHORIZATION = "Authorization";
+        public static final String RETRY_AFTER = "Retry-After";
+        public static final String ETAG = "ETag";
+        public static final String IF_NONE_MATCH = "If-None-Match";
+        public static final String CACHE_CONTROL = "Cache-Control";
+        public static final String LAST_MODIFIED = "Last-Modified";
+        public static final String IF_MATCH = "If-Match";
+        public static final String IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
         public static final String BEARER_PREFIX = "Bearer ";
     }
 
@@ -59,6 +81,13 @@ public final class ApiConstants {
         public static final String EMPTY_CONTENT = "empty.content";
         public static final String NOT_FOUND = "not.found";
         public static final String FORBIDDEN = "forbidden";
+        public static final String PRECONDITION_FAILED = "precondition.failed";
         public static final String INTERNAL_ERROR = "internal.error";
+        public static final String SERVICE_UNAVAILABLE = "service.unavailable";
+        public static final String INVALID_CURSOR = "invalid.cursor";
+        public static final String INVALID_LIMIT = "invalid.limit";
+        public static final String INVALID_DATE_FORMAT = "invalid.date.format";
+        public static final String INVALID_DISPLAY_DATE = "invalid.display.date";
+        public static final String INVALID_BATCH = "invalid.batch";
     }
 }
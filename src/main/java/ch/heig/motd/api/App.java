@@ -1,25 +1,39 @@
 package ch.heig.motd.api;
 
+import ch.heig.motd.concurrent.BoundedExecutor;
+import ch.heig.motd.config.Env;
 import ch.heig.motd.controller.AuthController;
 import ch.heig.motd.controller.PostController;
 import ch.heig.motd.db.DbConfig;
 import ch.heig.motd.repository.PostgresPostRepository;
 import ch.heig.motd.repository.PostgresUserRepository;
+import ch.heig.motd.repository.BloomFilterTokenStore;
+import ch.heig.motd.repository.PostgresTokenStore;
 import ch.heig.motd.repository.TokenRevocationStore;
+import ch.heig.motd.repository.TokenStore;
 import ch.heig.motd.service.AuthService;
 import ch.heig.motd.service.AuthServiceImpl;
 import ch.heig.motd.service.PostService;
 import ch.heig.motd.service.PostServiceImpl;
 import ch.heig.motd.service.UserService;
 import ch.heig.motd.service.UserServicePostgres;
+import ch.heig.motd.auth.BCryptPasswordHasher;
+import ch.heig.motd.auth.DelegatingPasswordHasher;
 import ch.heig.motd.auth.JwtProvider;
+import ch.heig.motd.auth.PasswordHasher;
+import ch.heig.motd.auth.Pbkdf2PasswordHasher;
 import io.javalin.Javalin;
 import io.javalin.openapi.plugin.OpenApiPlugin;
 import io.javalin.openapi.plugin.SecurityComponentConfiguration;
 import io.javalin.openapi.plugin.swagger.SwaggerPlugin;
 import io.javalin.openapi.BearerAuth;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
 
 import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Optional;
 
 /**
  * Entry point of the MOTD API server.
@@ -30,18 +44,48 @@ public class App {
      * @param args command line arguments
      */
     public static void main(String[] args) {
-        DataSource ds = DbConfig.createFromEnv();
+        PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        Metrics.addRegistry(prometheus);
+
+        DataSource ds = DbConfig.limitFromEnv(DbConfig.createFromEnv());
+        boolean useVirtualThreads = Boolean.parseBoolean(System.getenv("USE_VIRTUAL_THREADS"));
 
         PostgresUserRepository pgUser = new PostgresUserRepository(ds);
-        PostgresPostRepository pgPost = new PostgresPostRepository(ds);
+        PostgresPostRepository pgPost = new PostgresPostRepository(ds, DbConfig.readRouterFromEnv(ds));
 
-        UserService userService = new UserServicePostgres(pgUser);
-        PostService postService = new PostServiceImpl(pgPost, pgUser);
+        int cores = Runtime.getRuntime().availableProcessors();
+        int passwordThreads = Env.getInt("PASSWORD_THREADS", cores);
+        BoundedExecutor passwordExecutor = new BoundedExecutor("password", passwordThreads, Env.getInt("PASSWORD_QUEUE", passwordThreads * 4))
+            .monitor(Metrics.globalRegistry);
+        PasswordHasher passwordHasher = DelegatingPasswordHasher.of(
+            Optional.ofNullable(System.getenv("PASSWORD_ALGORITHM")).orElse("bcrypt"),
+            Env.getInt("BCRYPT_COST", BCryptPasswordHasher.DEFAULT_COST),
+            Env.getInt("PBKDF2_ITERATIONS", Pbkdf2PasswordHasher.DEFAULT_ITERATIONS));
+        UserService userService = new UserServicePostgres(pgUser, passwordExecutor, passwordHasher, Metrics.globalRegistry);
+        PostService postService = new PostServiceImpl(pgPost);
 
-        TokenRevocationStore tokenStore = new TokenRevocationStore();
+        TokenStore tokenStore;
+        if ("memory".equalsIgnoreCase(System.getenv("TOKEN_STORE"))) {
+            // single instance only: revocations are lost on restart
+            TokenRevocationStore memoryTokens = new TokenRevocationStore().monitor(Metrics.globalRegistry);
+            memoryTokens.startSweeper();
+            tokenStore = memoryTokens;
+        } else {
+            PostgresTokenStore pgTokens = new PostgresTokenStore(ds, Duration.ofMillis(Env.getInt("TOKEN_NOT_REVOKED_CACHE_MS", 1000)));
+            pgTokens.startPurge(Duration.ofSeconds(Env.getInt("TOKEN_PURGE_INTERVAL_S", 600)), Env.getInt("TOKEN_PURGE_BATCH_SIZE", 1000));
+            BloomFilterTokenStore bloomTokens = new BloomFilterTokenStore(pgTokens,
+                Env.getInt("TOKEN_BLOOM_EXPECTED", 100_000), Env.getDouble("TOKEN_BLOOM_FPP", 0.01), Metrics.globalRegistry);
+            bloomTokens.startRotation(JwtProvider.TOKEN_LIFETIME);
+            bloomTokens.startSync(Duration.ofMillis(Env.getInt("TOKEN_BLOOM_SYNC_MS", 1000)), Duration.ofSeconds(Env.getInt("TOKEN_BLOOM_RESYNC_S", 3600)));
+            tokenStore = bloomTokens;
+        }
         AuthService authService = new AuthServiceImpl(userService, tokenStore, JwtProvider.defaultProvider());
 
+        Duration httpIdleTimeout = Duration.ofSeconds(Env.getInt("HTTP_IDLE_TIMEOUT_S", 30));
         Javalin app = Javalin.create(config -> {
+            config.useVirtualThreads = useVirtualThreads;
+            // bounds a read or write blocked on a client, such as an export to a client that stopped reading
+            config.jetty.modifyHttpConfiguration(http -> http.setIdleTimeout(httpIdleTimeout.toMillis()));
             config.registerPlugin(new OpenApiPlugin(pluginConfig -> {
                 pluginConfig.withDocumentationPath("/openapi");
                 pluginConfig.withDefinitionConfiguration((version, definition) -> {
@@ -58,7 +102,9 @@ public class App {
 
         // controllers
         AuthController authController = new AuthController(authService, userService);
-        PostController postController = new PostController(postService, authService);
+        PostController postController = new PostController(postService, authService, PostController.loaderExecutor(
+            Env.getInt("POSTS_LOADER_THREADS", PostController.LOADER_THREADS), Env.getInt("POSTS_LOADER_QUEUE", PostController.LOADER_QUEUE)));
+        postController.startDailySnapshot(Duration.ofSeconds(Env.getInt("DAILY_SNAPSHOT_REFRESH_S", 30)));
 
         // middleware
         AuthMiddleware authMiddleware = new AuthMiddleware(authService);
@@ -66,6 +112,12 @@ public class App {
         // register routes centrally
         Routes.register(app, authController, postController, authMiddleware);
 
-        System.out.println("MOTD server started on http://localhost:7000 (useDb=true)");
+        // metrics on their own port, kept off the public one
+        int managementPort = Env.getInt("MANAGEMENT_PORT", 9090);
+        Javalin management = Javalin.create().start(managementPort);
+        ManagementRoutes.register(management, prometheus);
+
+        System.out.println("MOTD server started on http://localhost:7000 (useDb=true, virtualThreads=" + useVirtualThreads
+            + ", metrics on port " + managementPort + ")");
     }
 }
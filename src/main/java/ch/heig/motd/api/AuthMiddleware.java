@@ -1,13 +1,22 @@
 package ch.heig.motd.api;
 
+import ch.heig.motd.concurrent.OverloadedException;
 import ch.heig.motd.service.AuthService;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.Map;
 import java.util.Optional;
 
 public class AuthMiddleware {
+    private static final Logger log = LoggerFactory.getLogger(AuthMiddleware.class);
+
+    /**
+     * Retry delay sent when the token store fails, so that clients back off instead of logging in again.
+     */
+    static final long STORE_FAILURE_RETRY_AFTER_SECONDS = 1;
+
     private final AuthService authService;
 
     public AuthMiddleware(AuthService authService) {
@@ -20,19 +29,51 @@ public class AuthMiddleware {
         if (!(method == io.javalin.http.HandlerType.POST || method == io.javalin.http.HandlerType.PUT || method == io.javalin.http.HandlerType.DELETE)) {
             return;
         }
+        authenticate(ctx);
+    }
+
+    /**
+     * Requires a valid bearer token whatever the HTTP method, for the reads which are not public.
+     * @param ctx Javalin context
+     */
+    public void authenticate(Context ctx) {
         String auth = ctx.header(ApiConstants.Headers.AUTHORIZATION);
         if (auth == null || !auth.startsWith(ApiConstants.Headers.BEARER_PREFIX)) {
-            ctx.status(401).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.MISSING_TOKEN));
+            reject(ctx, 401, ApiConstants.Errors.MISSING_TOKEN);
             return;
         }
         String token = auth.substring(ApiConstants.Headers.BEARER_PREFIX.length());
-        Optional<DecodedJWT> decOpt = authService.validateAndGetClaims(token);
+        Optional<DecodedJWT> decOpt;
+        try {
+            decOpt = authService.validateAndGetClaims(token);
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
+            ctx.skipRemainingHandlers();
+            return;
+        } catch (RuntimeException e) {
+            // the token may well be valid: do not make the client drop it with a 401
+            log.error("Token store failure while checking revocation", e);
+            ctx.header(ApiConstants.Headers.RETRY_AFTER, String.valueOf(STORE_FAILURE_RETRY_AFTER_SECONDS));
+            reject(ctx, 503, ApiConstants.Errors.SERVICE_UNAVAILABLE);
+            return;
+        }
         if (decOpt.isEmpty()) {
-            ctx.status(401).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INVALID_TOKEN));
+            reject(ctx, 401, ApiConstants.Errors.INVALID_TOKEN);
             return;
         }
         DecodedJWT dec = decOpt.get();
         ctx.attribute("decodedJwt", dec);
         ctx.attribute("uid", Long.parseLong(dec.getSubject()));
     }
+
+    /**
+     * Answers with an error and skips the endpoint handler, which would otherwise overwrite the response.
+     * @param ctx Javalin context
+     * @param status HTTP status
+     * @param code error code
+     */
+    private static void reject(Context ctx, int status, String code) {
+        Json.error(ctx, status, code);
+        ctx.skipRemainingHandlers();
+    }
 }
@@ -0,0 +1,152 @@
+package ch.heig.motd.api;
+
+import ch.heig.motd.concurrent.OverloadedException;
+import ch.heig.motd.dto.ErrorDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reading and writing JSON bodies without going through Javalin's generic mapper.
+ * <p>
+ * Callers keep one {@link ObjectReader} or {@link ObjectWriter} per body type in a constant, so the type is resolved
+ * and its (de)serializer looked up once, not on every request. Error bodies, which only depend on their code, are
+ * encoded once and then reused as-is.
+ */
+public final class Json {
+    /**
+     * Logger instance for logging.
+     */
+    private static final Logger log = LoggerFactory.getLogger(Json.class);
+
+    /**
+     * Mapper every reader and writer derives from, sharing its serializer cache.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Writer of the error bodies.
+     */
+    private static final ObjectWriter ERROR_WRITER = MAPPER.writerFor(ErrorDto.class);
+
+    /**
+     * Encoded error bodies, by error code.
+     */
+    private static final Map<String, byte[]> ERROR_BODIES = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Json() {}
+
+    /**
+     * Builds a reader of the given body type, to be kept in a constant.
+     * @param type body type
+     * @return the reader
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return MAPPER.readerFor(type);
+    }
+
+    /**
+     * Builds a writer of the given body type, to be kept in a constant.
+     * @param type body type
+     * @return the writer
+     */
+    public static ObjectWriter writer(Class<?> type) {
+        return MAPPER.writerFor(type);
+    }
+
+    /**
+     * Builds a writer of the given generic body type, to be kept in a constant.
+     * @param type body type
+     * @return the writer
+     */
+    public static ObjectWriter writer(TypeReference<?> type) {
+        return MAPPER.writerFor(type);
+    }
+
+    /**
+     * Reads the request body.
+     * @param ctx Javalin context
+     * @param reader reader of the expected type
+     * @param <T> expected type
+     * @return the body, or null if the request has none
+     * @throws IOException if the body is not valid JSON for the expected type
+     */
+    public static <T> T read(Context ctx, ObjectReader reader) throws IOException {
+        byte[] body = ctx.bodyAsBytes();
+        if (body == null || body.length == 0) return null;
+        return reader.readValue(body);
+    }
+
+    /**
+     * Encodes a body.
+     * @param writer writer of the body type
+     * @param value body
+     * @return UTF-8 encoded JSON
+     */
+    public static byte[] encode(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response body", e);
+        }
+    }
+
+    /**
+     * Responds with a JSON body.
+     * @param ctx Javalin context
+     * @param status HTTP status
+     * @param writer writer of the body type
+     * @param value body
+     */
+    public static void send(Context ctx, int status, ObjectWriter writer, Object value) {
+        byte[] body = encode(writer, value);
+        ctx.status(status);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        ctx.result(body);
+    }
+
+    /**
+     * Gets the encoded body of an error.
+     * @param code error code, one of {@link ApiConstants.Errors}
+     * @return UTF-8 encoded JSON, shared: must not be modified
+     */
+    public static byte[] errorBody(String code) {
+        return ERROR_BODIES.computeIfAbsent(code, c -> encode(ERROR_WRITER, new ErrorDto(c)));
+    }
+
+    /**
+     * Responds with an error body.
+     * @param ctx Javalin context
+     * @param status HTTP status
+     * @param code error code, one of {@link ApiConstants.Errors}
+     */
+    public static void error(Context ctx, int status, String code) {
+        ctx.status(status);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        ctx.result(errorBody(code));
+    }
+
+    /**
+     * Responds with 503 and a Retry-After header when a backend resource is saturated.
+     * @param ctx Javalin context
+     * @param e the overload signal
+     */
+    public static void overloaded(Context ctx, OverloadedException e) {
+        log.warn("Shedding request: {}", e.getMessage());
+        ctx.header(ApiConstants.Headers.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        error(ctx, 503, ApiConstants.Errors.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,29 @@
+package ch.heig.motd.api;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.javalin.Javalin;
+
+/**
+ * Registers the operational routes (metrics). They are served by a separate Javalin instance on the management port,
+ * which is not published, so that pool and executor internals and authentication failure counters are not public.
+ */
+public final class ManagementRoutes {
+    /**
+     * Content type of the Prometheus text exposition format.
+     */
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ManagementRoutes() {}
+
+    /**
+     * Registers the management routes.
+     * @param management the Javalin instance listening on the management port
+     * @param prometheus the registry scraped by Prometheus
+     */
+    public static void register(Javalin management, PrometheusMeterRegistry prometheus) {
+        management.get(ApiConstants.Paths.METRICS, ctx -> ctx.contentType(PROMETHEUS_CONTENT_TYPE).result(prometheus.scrape()));
+    }
+}
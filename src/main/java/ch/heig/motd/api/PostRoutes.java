@@ -19,9 +19,15 @@ public final class PostRoutes {
      */
     public static void register(Javalin app, PostController postController, AuthMiddleware authMiddleware) {
         app.get(ApiConstants.Paths.POSTS, postController::list);
+        // before POST_WITH_ID, whose {id} would match "export" too; not public, unlike the other reads
+        app.before(ApiConstants.Paths.POSTS_EXPORT, authMiddleware::authenticate);
+        app.get(ApiConstants.Paths.POSTS_EXPORT, postController::export);
+        app.get(ApiConstants.Paths.POST_WITH_ID, postController::get);
         app.before(ApiConstants.Paths.POSTS, authMiddleware::requireAuth);
         app.before(ApiConstants.Paths.POST_WITH_ID, authMiddleware::requireAuth);
         app.post(ApiConstants.Paths.POSTS, postController::create);
+        // authenticated by the POST_WITH_ID before-handler, whose {id} also matches "batch"
+        app.post(ApiConstants.Paths.POSTS_BATCH, postController::createBatch);
         app.put(ApiConstants.Paths.POST_WITH_ID, postController::update);
         app.delete(ApiConstants.Paths.POST_WITH_ID, postController::delete);
     }
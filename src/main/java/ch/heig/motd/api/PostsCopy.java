@@ -0,0 +1,63 @@
+package ch.heig.motd.api;
+
+import ch.heig.motd.db.DbConfig;
+import ch.heig.motd.repository.PostgresPostCopy;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command line entry point exporting the posts table to a CSV file, or loading it back, with PostgreSQL {@code COPY}.
+ * It uses the same database environment variables as {@link App}:
+ * <pre>
+ * java -cp motd.jar ch.heig.motd.api.PostsCopy export posts.csv
+ * java -cp motd.jar ch.heig.motd.api.PostsCopy import posts.csv
+ * </pre>
+ * The file is a path rather than stdin/stdout because the logs are written to stdout.
+ */
+public final class PostsCopy {
+    /**
+     * Size of the buffer between the file and the driver.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PostsCopy() {}
+
+    /**
+     * Main method.
+     * @param args {@code export <file>} or {@code import <file>}
+     * @throws IOException if the file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.err.println("usage: PostsCopy export|import <file.csv>");
+            System.exit(2);
+        }
+        Path file = Path.of(args[1]);
+        DataSource ds = DbConfig.createFromEnv();
+        try {
+            PostgresPostCopy copy = new PostgresPostCopy(ds);
+            if (args[0].equals("export")) {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+                    copy.exportCsv(out);
+                }
+            } else {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+                    copy.importCsv(in);
+                }
+            }
+        } finally {
+            if (ds instanceof HikariDataSource hikari) hikari.close();
+        }
+    }
+}
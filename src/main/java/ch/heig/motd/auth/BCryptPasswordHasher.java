@@ -0,0 +1,53 @@
+package ch.heig.motd.auth;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * BCrypt password hashing, producing {@code $2a$<cost>$<salt><hash>} hashes.
+ * <p>
+ * jBCrypt only understands the {@code $2a$} revision, so other revisions are not claimed as supported.
+ */
+public class BCryptPasswordHasher implements PasswordHasher {
+    /**
+     * Default cost factor (log2 of the number of rounds).
+     */
+    public static final int DEFAULT_COST = 10;
+
+    /**
+     * Cost factor used for new hashes.
+     */
+    private final int cost;
+
+    /**
+     * Constructor.
+     * @param cost cost factor used for new hashes, between 4 and 30
+     */
+    public BCryptPasswordHasher(int cost) {
+        if (cost < 4 || cost > 30) throw new IllegalArgumentException("bcrypt cost must be between 4 and 30");
+        this.cost = cost;
+    }
+
+    @Override
+    public String hash(String password) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(cost));
+    }
+
+    @Override
+    public boolean verify(String password, String hash) {
+        return BCrypt.checkpw(password, hash);
+    }
+
+    @Override
+    public boolean supports(String hash) {
+        return hash.startsWith("$2a$");
+    }
+
+    @Override
+    public boolean needsRehash(String hash) {
+        try {
+            return Integer.parseInt(hash.substring(4, 6)) != cost;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+}
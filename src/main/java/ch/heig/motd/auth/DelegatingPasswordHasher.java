@@ -0,0 +1,75 @@
+package ch.heig.motd.auth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Password hasher hashing with a current algorithm while still verifying hashes of other (legacy) algorithms,
+ * dispatching on the hash prefix. Hashes not produced by the current algorithm and settings are reported by
+ * {@link #needsRehash(String)}, so they can be upgraded transparently at the next successful login.
+ */
+public class DelegatingPasswordHasher implements PasswordHasher {
+    /**
+     * Algorithm used for new hashes.
+     */
+    private final PasswordHasher current;
+
+    /**
+     * Every supported algorithm, current first.
+     */
+    private final List<PasswordHasher> hashers;
+
+    /**
+     * Constructor.
+     * @param current algorithm used for new hashes
+     * @param legacy other algorithms whose hashes can still be verified
+     */
+    public DelegatingPasswordHasher(PasswordHasher current, List<PasswordHasher> legacy) {
+        this.current = current;
+        this.hashers = new ArrayList<>();
+        this.hashers.add(current);
+        this.hashers.addAll(legacy);
+    }
+
+    /**
+     * Creates the hasher for the given settings; hashes of the other algorithm keep verifying.
+     * @param algorithm algorithm used for new hashes, {@code bcrypt} or {@code pbkdf2}
+     * @param bcryptCost BCrypt cost factor
+     * @param pbkdf2Iterations PBKDF2 iteration count
+     * @return the hasher
+     * @throws IllegalArgumentException if the algorithm is unknown
+     */
+    public static DelegatingPasswordHasher of(String algorithm, int bcryptCost, int pbkdf2Iterations) {
+        PasswordHasher bcrypt = new BCryptPasswordHasher(bcryptCost);
+        PasswordHasher pbkdf2 = new Pbkdf2PasswordHasher(pbkdf2Iterations);
+        return switch (algorithm.toLowerCase(Locale.ROOT)) {
+            case "bcrypt" -> new DelegatingPasswordHasher(bcrypt, List.of(pbkdf2));
+            case "pbkdf2" -> new DelegatingPasswordHasher(pbkdf2, List.of(bcrypt));
+            default -> throw new IllegalArgumentException("unknown password algorithm: " + algorithm);
+        };
+    }
+
+    @Override
+    public String hash(String password) {
+        return current.hash(password);
+    }
+
+    @Override
+    public boolean verify(String password, String hash) {
+        for (PasswordHasher hasher : hashers) {
+            if (hasher.supports(hash)) return hasher.verify(password, hash);
+        }
+        throw new IllegalArgumentException("unsupported password hash format");
+    }
+
+    @Override
+    public boolean supports(String hash) {
+        return hashers.stream().anyMatch(h -> h.supports(hash));
+    }
+
+    @Override
+    public boolean needsRehash(String hash) {
+        return !current.supports(hash) || current.needsRehash(hash);
+    }
+}
@@ -2,26 +2,111 @@ package ch.heig.motd.auth;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.AlgorithmMismatchException;
+import com.auth0.jwt.exceptions.InvalidClaimException;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.JWTVerifier;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 
 /**
  * This class provides methods to create and verify JWT tokens.
+ * <p>
+ * Verified tokens are cached until they expire, so that a client sending the same bearer token on every request
+ * only pays for the signature check and the JSON decoding once. Revocation is not cached here: it is checked by the
+ * caller on every request.
  */
 public class JwtProvider implements JwtProviderInterface {
+    /**
+     * Logger instance for logging.
+     */
+    private static final Logger log = LoggerFactory.getLogger(JwtProvider.class);
+
+    /**
+     * Lifetime of the issued tokens.
+     */
+    public static final Duration TOKEN_LIFETIME = Duration.ofHours(24);
+
+    /**
+     * Maximum number of verified tokens kept in the cache.
+     */
+    static final int VERIFIED_CACHE_SIZE = 10_000;
+
     /**
      * The algorithm used for signing and verifying JWT tokens.
      */
     private final Algorithm algorithm;
 
+    /**
+     * Verifier shared by all requests (immutable, hence thread-safe).
+     */
+    private final JWTVerifier verifier;
+
+    /**
+     * Recently verified tokens, keyed by the hash of the token and expiring with the token.
+     */
+    private final Cache<String, DecodedJWT> verified;
+
+    /**
+     * Meter registry, used to count verification failures by reason.
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * Creates a new JwtProvider with the specified algorithm, reporting metrics to the global registry.
+     * @param algorithm the algorithm to use for signing and verifying tokens
+     */
+    public JwtProvider(Algorithm algorithm) { this(algorithm, Metrics.globalRegistry); }
+
     /**
      * Creates a new JwtProvider with the specified algorithm.
      * @param algorithm the algorithm to use for signing and verifying tokens
+     * @param registry meter registry for the verification metrics
      */
-    public JwtProvider(Algorithm algorithm) { this.algorithm = algorithm; }
+    public JwtProvider(Algorithm algorithm, MeterRegistry registry) {
+        this.algorithm = algorithm;
+        this.verifier = JWT.require(algorithm).build();
+        this.registry = registry;
+        this.verified = Caffeine.newBuilder()
+            .maximumSize(VERIFIED_CACHE_SIZE)
+            .expireAfter(new Expiry<String, DecodedJWT>() {
+                @Override
+                public long expireAfterCreate(String key, DecodedJWT jwt, long currentTime) {
+                    return Math.max(0, jwt.getExpiresAtAsInstant().toEpochMilli() - System.currentTimeMillis()) * 1_000_000L;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, DecodedJWT jwt, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(String key, DecodedJWT jwt, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, verified, "jwt.verified");
+    }
 
     /**
      * Creates a default JwtProvider using the secret from the JWT_SECRET environment variable.
@@ -46,7 +131,7 @@ public class JwtProvider implements JwtProviderInterface {
      */
     public String createToken(long userId, String username, String jti) {
         Instant now = Instant.now();
-        Instant exp = now.plusSeconds(60L * 60L * 24L); // 24h
+        Instant exp = now.plus(TOKEN_LIFETIME);
         return JWT.create()
                 .withSubject(Long.toString(userId))
                 .withClaim("username", username)
@@ -58,15 +143,65 @@ public class JwtProvider implements JwtProviderInterface {
 
     /**
      * Verifies the given JWT token and returns the decoded token if valid.
+     * <p>
+     * Failures are counted in the {@code jwt.verification.failures} counter, tagged with their reason.
      * @param token the JWT token to verify
      * @return the decoded JWT token if valid, null otherwise
      */
     public DecodedJWT verifyToken(String token) {
-        try {
-            JWTVerifier verifier = JWT.require(algorithm).build();
-            return verifier.verify(token);
-        } catch (Exception e) {
+        if (token == null) {
+            fail("malformed", null);
             return null;
         }
+        String key = hash(token);
+        DecodedJWT cached = verified.getIfPresent(key);
+        if (cached != null) return cached;
+        try {
+            DecodedJWT jwt = verifier.verify(token);
+            // tokens without expiry are not ours; never cache them
+            if (jwt.getExpiresAtAsInstant() != null) verified.put(key, jwt);
+            return jwt;
+        } catch (TokenExpiredException e) {
+            fail("expired", e);
+        } catch (SignatureVerificationException e) {
+            fail("signature", e);
+        } catch (AlgorithmMismatchException e) {
+            fail("algorithm", e);
+        } catch (JWTDecodeException e) {
+            fail("malformed", e);
+        } catch (InvalidClaimException e) {
+            fail("claim", e);
+        } catch (RuntimeException e) {
+            fail("other", e);
+        }
+        return null;
+    }
+
+    /**
+     * Records a verification failure.
+     * @param reason failure reason, used as a metric tag
+     * @param e cause, or null
+     */
+    private void fail(String reason, Exception e) {
+        Counter.builder("jwt.verification.failures")
+            .description("JWT verification failures")
+            .tag("reason", reason)
+            .register(registry)
+            .increment();
+        log.debug("Token verification failed ({}): {}", reason, e == null ? "no token" : e.getMessage());
+    }
+
+    /**
+     * Hashes a token for use as a cache key, so that bearer tokens themselves are not kept in memory.
+     * @param token token
+     * @return base64url encoded SHA-256 of the token
+     */
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
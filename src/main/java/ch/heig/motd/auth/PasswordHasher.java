@@ -0,0 +1,39 @@
+package ch.heig.motd.auth;
+
+/**
+ * Password hashing algorithm.
+ * <p>
+ * Hashes are self-describing strings starting with an algorithm prefix (e.g. {@code $2a$} or {@code $pbkdf2-sha256$})
+ * followed by the parameters used, so that hashes produced with older algorithms or settings can still be verified
+ * and detected for upgrade.
+ */
+public interface PasswordHasher {
+    /**
+     * Hashes a password with a fresh random salt.
+     * @param password clear-text password
+     * @return encoded hash
+     */
+    String hash(String password);
+
+    /**
+     * Verifies a password against a hash produced by this algorithm.
+     * @param password clear-text password
+     * @param hash encoded hash
+     * @return true if the password matches
+     */
+    boolean verify(String password, String hash);
+
+    /**
+     * Tells whether a hash was produced by this algorithm.
+     * @param hash encoded hash
+     * @return true if this hasher can verify it
+     */
+    boolean supports(String hash);
+
+    /**
+     * Tells whether a hash supported by this algorithm uses outdated parameters and should be recomputed.
+     * @param hash encoded hash
+     * @return true if the hash should be upgraded
+     */
+    boolean needsRehash(String hash);
+}
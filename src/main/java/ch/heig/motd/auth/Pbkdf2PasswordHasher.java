@@ -0,0 +1,105 @@
+package ch.heig.motd.auth;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 password hashing, using the JDK implementation, producing
+ * {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>} hashes (salt and hash base64 encoded, without padding).
+ * <p>
+ * Its cost grows linearly with the iteration count, which makes it easy to tune per deployment.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+    /**
+     * Default iteration count (OWASP recommendation for PBKDF2-HMAC-SHA256).
+     */
+    public static final int DEFAULT_ITERATIONS = 600_000;
+
+    /**
+     * Hash prefix.
+     */
+    static final String PREFIX = "$pbkdf2-sha256$";
+
+    /**
+     * Salt length, in bytes.
+     */
+    private static final int SALT_BYTES = 16;
+
+    /**
+     * Derived key length, in bits.
+     */
+    private static final int KEY_BITS = 256;
+
+    /**
+     * Source of salts.
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Iteration count used for new hashes.
+     */
+    private final int iterations;
+
+    /**
+     * Constructor.
+     * @param iterations iteration count used for new hashes
+     */
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("pbkdf2 iterations must be positive");
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(derive(password, salt, iterations));
+    }
+
+    @Override
+    public boolean verify(String password, String hash) {
+        String[] parts = hash.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) throw new IllegalArgumentException("malformed pbkdf2 hash");
+        byte[] salt = Base64.getDecoder().decode(parts[1]);
+        byte[] expected = Base64.getDecoder().decode(parts[2]);
+        return MessageDigest.isEqual(expected, derive(password, salt, Integer.parseInt(parts[0])));
+    }
+
+    @Override
+    public boolean supports(String hash) {
+        return hash.startsWith(PREFIX);
+    }
+
+    @Override
+    public boolean needsRehash(String hash) {
+        int end = hash.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(hash.substring(PREFIX.length(), end)) != iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Derives the key of a password.
+     * @param password clear-text password
+     * @param salt salt
+     * @param iterations iteration count
+     * @return derived key
+     */
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ch.heig.motd.concurrent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size worker pool with a bounded queue, for CPU-bound work that must not run on request threads.
+ * <p>
+ * Callers block until their task completes, but the amount of such work in flight is capped: once every worker is
+ * busy and the queue is full, tasks are rejected with an {@link OverloadedException} instead of piling up, so a
+ * burst of expensive requests cannot starve the CPU needed by the others.
+ */
+public class BoundedExecutor {
+    /**
+     * Name of the pool, used for thread names, metrics and error messages.
+     */
+    private final String name;
+
+    /**
+     * Underlying executor.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor.
+     * @param name name of the pool
+     * @param threads number of worker threads
+     * @param queueCapacity maximum number of tasks waiting for a worker
+     */
+    public BoundedExecutor(String name, int threads, int queueCapacity) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1");
+        this.name = name;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Exposes the pool metrics (active workers, queued tasks, completed tasks...).
+     * @param registry meter registry
+     * @return this executor
+     */
+    public BoundedExecutor monitor(MeterRegistry registry) {
+        ExecutorServiceMetrics.monitor(registry, executor, name, List.of());
+        return this;
+    }
+
+    /**
+     * Gets the number of tasks waiting for a worker.
+     * @return queue length
+     */
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Runs a task on the pool and waits for its result.
+     * @param task task to run
+     * @param <T> result type
+     * @return the result of the task
+     * @throws OverloadedException if the pool is saturated, or the caller is interrupted while waiting
+     */
+    public <T> T call(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new OverloadedException(name + " is overloaded", 1);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new OverloadedException(name + " wait interrupted", 1);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ch.heig.motd.concurrent;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent callers of a resource, with a bounded wait queue.
+ * <p>
+ * Callers beyond {@code maxConcurrent} wait for a permit; once {@code maxQueued} callers are already waiting, or
+ * when a permit cannot be obtained within {@code maxWait}, an {@link OverloadedException} is thrown instead.
+ */
+public class Bulkhead {
+    /**
+     * Name of the protected resource, used in error messages.
+     */
+    private final String name;
+
+    /**
+     * Permits for the callers currently using the resource.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Maximum number of callers allowed to wait for a permit.
+     */
+    private final int maxQueued;
+
+    /**
+     * Maximum time a caller waits for a permit.
+     */
+    private final Duration maxWait;
+
+    /**
+     * Number of callers currently waiting for a permit.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * Constructor.
+     * @param name name of the protected resource
+     * @param maxConcurrent maximum number of concurrent callers
+     * @param maxQueued maximum number of callers waiting for a permit
+     * @param maxWait maximum time a caller waits for a permit
+     */
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, Duration maxWait) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        if (maxQueued < 0) throw new IllegalArgumentException("maxQueued must not be negative");
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Acquires a permit, waiting for one if the queue is not full.
+     * Every successful call must be paired with a call to {@link #release()}.
+     * @throws OverloadedException if the queue is full or no permit became available in time
+     */
+    public void acquire() {
+        if (permits.tryAcquire()) return;
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw overloaded();
+        }
+        try {
+            if (!permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) throw overloaded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Releases a permit obtained with {@link #acquire()}.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Gets the number of callers currently waiting for a permit.
+     * @return queue length
+     */
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     * Builds the exception thrown when the bulkhead is full. Callers are told to retry after the maximum wait.
+     * @return the exception
+     */
+    private OverloadedException overloaded() {
+        return new OverloadedException(name + " is overloaded", Math.max(1, maxWait.toSeconds()));
+    }
+}
@@ -0,0 +1,32 @@
+package ch.heig.motd.concurrent;
+
+/**
+ * Thrown when a bounded resource (database, CPU-bound worker pool...) is saturated and the request is shed
+ * instead of queued indefinitely. Controllers map it to {@code 503 Service Unavailable} with a {@code Retry-After}.
+ */
+public class OverloadedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of seconds after which the client may retry.
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructor.
+     * @param message description of the saturated resource
+     * @param retryAfterSeconds number of seconds after which the client may retry
+     */
+    public OverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Gets the number of seconds after which the client may retry.
+     * @return retry delay in seconds
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
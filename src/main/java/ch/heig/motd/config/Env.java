@@ -0,0 +1,57 @@
+package ch.heig.motd.config;
+
+/**
+ * Typed access to environment variables used for configuration.
+ */
+public final class Env {
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Env() {}
+
+    /**
+     * Reads an integer environment variable.
+     * @param name variable name
+     * @param defaultValue value used when the variable is not set
+     * @return the value
+     * @throws IllegalStateException if the variable is not a valid integer
+     */
+    public static int getInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(name + " must be an integer but was '" + value + "'", e);
+        }
+    }
+
+    /**
+     * Reads a decimal environment variable.
+     * @param name variable name
+     * @param defaultValue value used when the variable is not set
+     * @return the value
+     * @throws IllegalStateException if the variable is not a valid number
+     */
+    public static double getDouble(String name, double defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(name + " must be a number but was '" + value + "'", e);
+        }
+    }
+
+    /**
+     * Reads a boolean environment variable.
+     * @param name variable name
+     * @param defaultValue value used when the variable is not set
+     * @return the value
+     */
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) return defaultValue;
+        return Boolean.parseBoolean(value.trim());
+    }
+}
@@ -1,11 +1,18 @@
 package ch.heig.motd.controller;
 
 import ch.heig.motd.api.ApiConstants;
+import ch.heig.motd.api.Json;
+import ch.heig.motd.concurrent.OverloadedException;
 import ch.heig.motd.dto.Credentials;
+import ch.heig.motd.dto.MessageDto;
+import ch.heig.motd.dto.TokenDto;
+import ch.heig.motd.dto.UserDto;
 import ch.heig.motd.model.User;
 import ch.heig.motd.service.AuthService;
 import ch.heig.motd.service.UserService;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.javalin.http.Context;
 import io.javalin.openapi.*;
 import org.apache.commons.lang3.StringUtils;
@@ -13,7 +20,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -25,6 +31,16 @@ public class AuthController {
      */
     private static final Logger log = LoggerFactory.getLogger(AuthController.class);
 
+    private static final ObjectReader CREDENTIALS_READER = Json.reader(Credentials.class);
+    private static final ObjectWriter USER_WRITER = Json.writer(UserDto.class);
+    private static final ObjectWriter TOKEN_WRITER = Json.writer(TokenDto.class);
+    private static final ObjectWriter MESSAGE_WRITER = Json.writer(MessageDto.class);
+
+    /**
+     * Body of a successful logout, the same for every user.
+     */
+    private static final MessageDto LOGGED_OUT = new MessageDto("logged.out");
+
     /**
      * Authentication service.
      */
@@ -63,38 +79,33 @@ public class AuthController {
     )
     public void register(Context ctx) {
         try {
-            String body = ctx.body();
-            if (StringUtils.isBlank(body)) {
-                log.warn("Empty request body in register");
-                ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD));
-                return;
-            }
-
             Credentials credentials;
             try {
-                credentials = ctx.bodyAsClass(Credentials.class);
+                credentials = Json.read(ctx, CREDENTIALS_READER);
             } catch (Exception ex) {
-                log.warn("Malformed JSON in register: {}", body);
-                ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD));
+                log.warn("Malformed JSON in register: {}", ex.getMessage());
+                Json.error(ctx, 400, ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD);
                 return;
             }
 
             if (credentials == null || StringUtils.isBlank(credentials.username()) || StringUtils.isBlank(credentials.password())) {
                 log.warn("Missing username or password in register request, username={}", (credentials == null ? null : credentials.username()));
-                ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD));
+                Json.error(ctx, 400, ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD);
                 return;
             }
 
             try {
                 User u = userService.register(credentials.username(), credentials.password());
-                ctx.status(201).json(Map.of("id", u.getId(), "username", u.getUsername(), "createdAt", u.getCreatedAt().toString()));
+                Json.send(ctx, 201, USER_WRITER, new UserDto(u.getId(), u.getUsername(), u.getCreatedAt().toString()));
             } catch (IllegalArgumentException e) {
                 log.info("Attempt to register existing username={}", credentials.username());
-                ctx.status(409).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.USERNAME_EXISTS));
+                Json.error(ctx, 409, ApiConstants.Errors.USERNAME_EXISTS);
             }
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
         } catch (Exception e) {
             log.error("Unexpected error in register", e);
-            ctx.status(500).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INTERNAL_ERROR));
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
         }
     }
 
@@ -116,20 +127,28 @@ public class AuthController {
     )
     public void login(Context ctx) {
         try {
-            Map body = ctx.bodyAsClass(Map.class);
-            String username = (String) body.get(ApiConstants.Keys.USERNAME);
-            String password = (String) body.get(ApiConstants.Keys.PASSWORD);
+            Credentials credentials;
+            try {
+                credentials = Json.read(ctx, CREDENTIALS_READER);
+            } catch (Exception ex) {
+                log.warn("Malformed JSON in login: {}", ex.getMessage());
+                credentials = null;
+            }
+            String username = credentials == null ? null : credentials.username();
+            String password = credentials == null ? null : credentials.password();
             if (username == null || password == null) {
-                ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD));
+                Json.error(ctx, 400, ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD);
                 return;
             }
             Optional<String> ot = authService.login(username, password);
-            if (ot.isEmpty()) { ctx.status(401).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INVALID_CREDENTIALS)); return; }
+            if (ot.isEmpty()) { Json.error(ctx, 401, ApiConstants.Errors.INVALID_CREDENTIALS); return; }
             String token = ot.get();
-            ctx.status(200).json(Map.of(ApiConstants.Keys.TOKEN, token));
+            Json.send(ctx, 200, TOKEN_WRITER, new TokenDto(token));
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
         } catch (Exception e) {
             log.error("Unexpected error in login", e);
-            ctx.status(500).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INTERNAL_ERROR));
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
         }
     }
 
@@ -152,14 +171,16 @@ public class AuthController {
         try {
             // The AuthMiddleware sets the "decodedJwt" and "uid" attributes when the request is authenticated.
             DecodedJWT dec = ctx.attribute("decodedJwt");
-            if (dec == null) { ctx.status(401).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.MISSING_TOKEN)); return; }
+            if (dec == null) { Json.error(ctx, 401, ApiConstants.Errors.MISSING_TOKEN); return; }
             String jti = dec.getId();
             Instant exp = dec.getExpiresAt().toInstant();
             authService.logout(jti, exp);
-            ctx.status(200).json(Map.of("message", "logged.out"));
+            Json.send(ctx, 200, MESSAGE_WRITER, LOGGED_OUT);
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
         } catch (Exception e) {
             log.error("Unexpected error in logout", e);
-            ctx.status(500).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INTERNAL_ERROR));
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
         }
     }
 
@@ -184,14 +205,16 @@ public class AuthController {
             Long uid = ctx.attribute("uid");
 
             // If uid is still null, authentication failed or requireAuth wasn't registered; return 401.
-            if (uid == null) { ctx.status(401).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.UNAUTHORIZED)); return; }
+            if (uid == null) { Json.error(ctx, 401, ApiConstants.Errors.UNAUTHORIZED); return; }
 
             userService.delete(uid);
             log.info("User account deleted: userId={}", uid);
             ctx.status(204);
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
         } catch (Exception e) {
             log.error("Unexpected error in delete", e);
-            ctx.status(500).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INTERNAL_ERROR));
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
         }
     }
 }
@@ -0,0 +1,107 @@
+package ch.heig.motd.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fully encoded JSON response body, ready to be written as-is on every cache hit.
+ *
+ * @param json UTF-8 encoded JSON
+ * @param gzip gzip-compressed copy of {@code json}, or null when the body is too small to be worth compressing
+ * @param etag strong entity tag derived from the content, for the uncompressed representation
+ */
+record CachedBody(byte[] json, byte[] gzip, String etag) {
+    /**
+     * Bodies smaller than this are sent uncompressed (same threshold as Javalin's own compression).
+     */
+    static final int MIN_GZIP_SIZE = 1500;
+
+    /**
+     * Builds a cached body from encoded JSON, compressing it and computing its entity tag once.
+     * @param json UTF-8 encoded JSON
+     * @return the cached body
+     */
+    static CachedBody of(byte[] json) {
+        return new CachedBody(json, json.length >= MIN_GZIP_SIZE ? gzip(json) : null, etag(json));
+    }
+
+    /**
+     * Builds a cached body from encoded JSON and an entity tag computed by the caller.
+     * @param json UTF-8 encoded JSON
+     * @param etag quoted strong entity tag of the uncompressed representation
+     * @return the cached body
+     */
+    static CachedBody of(byte[] json, String etag) {
+        return new CachedBody(json, json.length >= MIN_GZIP_SIZE ? gzip(json) : null, etag);
+    }
+
+    /**
+     * Gets the entity tag of the gzip representation, which must differ from the uncompressed one since both are
+     * strong validators of different bytes.
+     * @return quoted entity tag
+     */
+    String gzipEtag() {
+        return gzipEtag(etag);
+    }
+
+    /**
+     * Gets the entity tag of the gzip representation of a body.
+     * @param etag quoted entity tag of the uncompressed representation
+     * @return quoted entity tag
+     */
+    static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    /**
+     * Tells whether an If-None-Match header matches an entity tag, using the weak comparison RFC 9110 requires for
+     * that header.
+     * @param ifNoneMatch header value (a list of entity tags, or {@code *}), possibly null
+     * @param etag quoted entity tag of the current representation
+     * @return true if the client's copy is current
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compresses the given bytes with gzip.
+     * @param bytes bytes to compress
+     * @return compressed bytes
+     */
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Computes a strong entity tag from the first 128 bits of the SHA-256 of the content.
+     * @param bytes content
+     * @return quoted entity tag
+     */
+    private static String etag(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package ch.heig.motd.controller;
+
+import ch.heig.motd.model.Post;
+import ch.heig.motd.service.PostService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Encoded posts of today and tomorrow, held in memory so that "today's message" never waits for the database.
+ * <p>
+ * Each day is an immutable snapshot: readers get it with a single volatile read, writers (the refresh, the day
+ * rollover and the patches applied when a post is written) build a new map of snapshots and swap it atomically.
+ * Posts are created for the next day, so tomorrow's snapshot is built, and kept up to date, ahead of time; shortly
+ * before midnight the day after is loaded too, so that both days are ready when the date changes.
+ * <p>
+ * Loads query the database without holding the lock taken by the patches, so that writes never wait for them. The
+ * patches made while a load runs are logged and replayed on the loaded posts before they are swapped in: the query
+ * may or may not have seen them, and a patch applies the same way either way.
+ */
+class DailySnapshot {
+    /**
+     * Logger instance for logging.
+     */
+    private static final Logger log = LoggerFactory.getLogger(DailySnapshot.class);
+
+    /**
+     * How long before midnight the snapshot of the day after tomorrow is loaded.
+     */
+    static final Duration PREWARM_LEAD = Duration.ofMinutes(1);
+
+    /**
+     * Order of the posts of a day, the one of {@link PostService#findByDate(LocalDate)}: the posts of a batch share
+     * their creation time, and are ordered by id.
+     */
+    private static final Comparator<Post> NEWEST_FIRST =
+        Comparator.comparing(Post::getCreatedAt).thenComparingLong(Post::getId).reversed();
+
+    /**
+     * Posts of one day and their encoded listing.
+     * @param posts posts, newest first
+     * @param body encoded listing
+     */
+    private record Day(List<Post> posts, CachedBody body) {
+        static Day of(List<Post> posts) {
+            return new Day(List.copyOf(posts), PostController.encode(PostController.toDtos(posts)));
+        }
+    }
+
+    /**
+     * Post service.
+     */
+    private final PostService postService;
+
+    /**
+     * Clock giving the current date, in the time zone of the display dates.
+     */
+    private final Clock clock;
+
+    /**
+     * Snapshots by display date, replaced as a whole.
+     */
+    private volatile Map<LocalDate, Day> days = Map.of();
+
+    /**
+     * Serializes the loads (refresh and rollover) without blocking the patches, which lock {@code this}.
+     */
+    private final Object loadLock = new Object();
+
+    /**
+     * Patches made since the running load started, to replay on the loaded posts; null when no load runs.
+     * Guarded by {@code this}.
+     */
+    private List<Consumer<Map<LocalDate, List<Post>>>> pending;
+
+    /**
+     * Constructor.
+     * @param postService post service
+     * @param clock clock giving the current date, in the time zone of the display dates
+     */
+    DailySnapshot(PostService postService, Clock clock) {
+        this.postService = postService;
+        this.clock = clock;
+    }
+
+    /**
+     * Gets the encoded listing of a day.
+     * @param date display date
+     * @return the encoded listing, or null if that day is not held
+     */
+    CachedBody get(LocalDate date) {
+        Day day = days.get(date);
+        return day == null ? null : day.body();
+    }
+
+    /**
+     * Reloads today and tomorrow, and the day after when midnight is less than {@link #PREWARM_LEAD} away.
+     */
+    void refresh() {
+        synchronized (loadLock) {
+            ZonedDateTime now = ZonedDateTime.now(clock);
+            LocalDate today = now.toLocalDate();
+            List<LocalDate> dates = new ArrayList<>(List.of(today, today.plusDays(1)));
+            if (!now.plus(PREWARM_LEAD).toLocalDate().equals(today)) dates.add(today.plusDays(2));
+            Map<LocalDate, List<Post>> loaded = load(dates);
+            synchronized (this) {
+                replayPending(loaded);
+                Map<LocalDate, Day> next = new HashMap<>();
+                loaded.forEach((date, posts) -> next.put(date, Day.of(posts)));
+                days = Map.copyOf(next);
+            }
+        }
+    }
+
+    /**
+     * Drops the days which are over, and loads tomorrow if it was not prewarmed.
+     */
+    void rollover() {
+        synchronized (loadLock) {
+            LocalDate today = LocalDate.now(clock);
+            Map<LocalDate, Day> held = days;
+            List<LocalDate> missing = new ArrayList<>();
+            if (!held.containsKey(today)) missing.add(today);
+            if (!held.containsKey(today.plusDays(1))) missing.add(today.plusDays(1));
+            Map<LocalDate, List<Post>> loaded = load(missing);
+            synchronized (this) {
+                replayPending(loaded);
+                // the days already held have been patched in place meanwhile
+                Map<LocalDate, Day> next = new HashMap<>(days);
+                next.keySet().removeIf(date -> date.isBefore(today));
+                loaded.forEach((date, posts) -> next.put(date, Day.of(posts)));
+                days = Map.copyOf(next);
+            }
+        }
+    }
+
+    /**
+     * Queries the posts of some days, without holding the lock, logging the patches made meanwhile.
+     * @param dates display dates
+     * @return mutable lists of posts by date, newest first
+     */
+    private Map<LocalDate, List<Post>> load(List<LocalDate> dates) {
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        try {
+            Map<LocalDate, List<Post>> loaded = new HashMap<>();
+            for (LocalDate date : dates) loaded.put(date, new ArrayList<>(postService.findByDate(date)));
+            return loaded;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending = null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replays the patches made during the load on the loaded posts, and stops logging them. Must be called with the
+     * lock held.
+     * @param loaded loaded posts by date
+     */
+    private void replayPending(Map<LocalDate, List<Post>> loaded) {
+        pending.forEach(patch -> patch.accept(loaded));
+        pending = null;
+    }
+
+    /**
+     * Adds or replaces a post in the snapshot of its display date, if that day is held.
+     * @param post created or updated post
+     */
+    synchronized void put(Post post) {
+        LocalDate date = post.getDisplayAt();
+        if (pending != null) pending.add(loaded -> upsert(loaded.get(date), post));
+        Day day = days.get(date);
+        if (day == null) return;
+        List<Post> posts = new ArrayList<>(day.posts());
+        upsert(posts, post);
+        replace(date, posts);
+    }
+
+    /**
+     * Adds or replaces posts in the snapshots of their display dates, if held: each affected day is rebuilt and
+     * encoded once, and all of them are swapped in together.
+     * @param posts created or updated posts
+     */
+    synchronized void putAll(List<Post> posts) {
+        Map<LocalDate, List<Post>> byDate = new HashMap<>();
+        for (Post post : posts) byDate.computeIfAbsent(post.getDisplayAt(), d -> new ArrayList<>()).add(post);
+        if (pending != null) pending.add(loaded -> byDate.forEach((date, batch) -> upsertAll(loaded.get(date), batch)));
+        Map<LocalDate, Day> next = new HashMap<>(days);
+        boolean changed = false;
+        for (Map.Entry<LocalDate, List<Post>> e : byDate.entrySet()) {
+            Day day = days.get(e.getKey());
+            if (day == null) continue;
+            List<Post> merged = new ArrayList<>(day.posts());
+            upsertAll(merged, e.getValue());
+            next.put(e.getKey(), Day.of(merged));
+            changed = true;
+        }
+        if (changed) days = Map.copyOf(next);
+    }
+
+    /**
+     * Removes a post from the snapshot of its display date, if that day is held.
+     * @param id id of the deleted post
+     * @param displayAt display date of the deleted post
+     */
+    synchronized void remove(long id, LocalDate displayAt) {
+        if (pending != null) pending.add(loaded -> removeById(loaded.get(displayAt), id));
+        Day day = days.get(displayAt);
+        if (day == null) return;
+        List<Post> posts = new ArrayList<>(day.posts());
+        if (removeById(posts, id)) replace(displayAt, posts);
+    }
+
+    /**
+     * Adds or replaces a post in the posts of a day, keeping them newest first.
+     * @param posts posts of the day, or null if that day is not held
+     * @param post created or updated post
+     */
+    private static void upsert(List<Post> posts, Post post) {
+        upsertAll(posts, List.of(post));
+    }
+
+    /**
+     * Adds or replaces posts in the posts of a day, keeping them newest first, with a single sort. A post already
+     * held in a newer version, e.g. loaded by a query that saw a later update, is kept rather than replaced by a
+     * replayed patch.
+     * @param posts posts of the day, or null if that day is not held
+     * @param batch created or updated posts of that day
+     */
+    private static void upsertAll(List<Post> posts, List<Post> batch) {
+        if (posts == null) return;
+        Map<Long, Post> byId = new HashMap<>();
+        for (Post p : posts) byId.put(p.getId(), p);
+        for (Post post : batch) byId.merge(post.getId(), post, (held, patch) -> held.getVersion() > patch.getVersion() ? held : patch);
+        posts.clear();
+        posts.addAll(byId.values());
+        posts.sort(NEWEST_FIRST);
+    }
+
+    /**
+     * Removes a post from the posts of a day.
+     * @param posts posts of the day, or null if that day is not held
+     * @param id id of the deleted post
+     * @return true if the post was there
+     */
+    private static boolean removeById(List<Post> posts, long id) {
+        return posts != null && posts.removeIf(p -> p.getId() == id);
+    }
+
+    /**
+     * Swaps in a new snapshot of one day.
+     * @param date display date
+     * @param posts posts of that day, newest first
+     */
+    private void replace(LocalDate date, List<Post> posts) {
+        Map<LocalDate, Day> next = new HashMap<>(days);
+        next.put(date, Day.of(posts));
+        days = Map.copyOf(next);
+    }
+
+    /**
+     * Loads the snapshots, then keeps them up to date on a background daemon thread: a periodic refresh picks up
+     * posts written by other instances, and a daily task prewarms the next day before midnight and rolls over at
+     * midnight.
+     * @param refreshInterval delay between two refreshes
+     */
+    void start(Duration refreshInterval) {
+        guarded(this::refresh);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "daily-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> guarded(this::refresh),
+            refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduleRollover(scheduler);
+    }
+
+    /**
+     * Schedules the prewarm before the next midnight and the rollover at midnight, which schedules the next ones.
+     * @param scheduler scheduler
+     */
+    private void scheduleRollover(ScheduledExecutorService scheduler) {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+        long untilMidnight = Duration.between(now, midnight).toMillis();
+        scheduler.schedule(() -> guarded(this::refresh),
+            Math.max(0, untilMidnight - PREWARM_LEAD.toMillis()), TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> {
+            guarded(this::rollover);
+            scheduleRollover(scheduler);
+        }, untilMidnight, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a refresh, logging its failure instead of cancelling the schedule; the previous snapshots stay in use.
+     * @param task refresh to run
+     */
+    private static void guarded(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.warn("Daily snapshot refresh failed", e);
+        }
+    }
+}
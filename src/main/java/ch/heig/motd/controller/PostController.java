@@ -1,12 +1,32 @@
 package ch.heig.motd.controller;
 
 import ch.heig.motd.api.ApiConstants;
+import ch.heig.motd.api.Json;
+import ch.heig.motd.concurrent.OverloadedException;
+import ch.heig.motd.dto.CreatedPostDto;
+import ch.heig.motd.dto.NewPostDto;
+import ch.heig.motd.dto.PostDetailsDto;
 import ch.heig.motd.dto.PostDto;
+import ch.heig.motd.dto.PostListDto;
+import ch.heig.motd.dto.PostPageDto;
+import ch.heig.motd.dto.UpdatedPostDto;
+import ch.heig.motd.model.NewPost;
 import ch.heig.motd.model.Post;
+import ch.heig.motd.model.PostCursor;
+import ch.heig.motd.model.Precondition;
+import ch.heig.motd.model.WriteResult;
 import ch.heig.motd.service.AuthService;
 import ch.heig.motd.service.PostService;
-import com.github.benmanes.caffeine.cache.Cache;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
 import io.javalin.http.HandlerType;
 import io.javalin.http.NotFoundResponse;
@@ -14,19 +34,26 @@ import io.javalin.openapi.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
 import java.time.Duration;
-import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Controller for managing posts.
@@ -36,8 +63,87 @@ public class PostController {
      * Logger instance for logging.
      */
     private static final Logger log = LoggerFactory.getLogger(PostController.class);
-    private static final String POSTS_CACHE_KEY = "all_posts";
-    private static final DateTimeFormatter HTTP_DATE_FORMATTER = 
+    private static final ObjectReader POST_READER = Json.reader(PostDto.class);
+    private static final ObjectReader BATCH_READER = Json.reader(NewPostDto[].class);
+    // no flush after each value: the export writes one per row, and a flush would commit the response at once
+    private static final ObjectWriter POST_WRITER = Json.writer(PostDetailsDto.class)
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private static final ObjectWriter LIST_WRITER = Json.writer(new TypeReference<List<PostDetailsDto>>() { });
+    private static final ObjectWriter PAGE_WRITER = Json.writer(PostPageDto.class);
+    private static final ObjectWriter BATCH_WRITER = Json.writer(PostListDto.class);
+    private static final ObjectWriter CREATED_WRITER = Json.writer(CreatedPostDto.class);
+    private static final ObjectWriter UPDATED_WRITER = Json.writer(UpdatedPostDto.class);
+    /**
+     * Factory of the export generators. Closing one neither closes the response stream, which Javalin still writes
+     * an error to, nor closes the open array, so that an export cut short is not mistaken for a complete one.
+     * Flushing one never flushes the response stream, which would commit the response: rows stay in the response
+     * buffer until it fills up, and a failure until then can still answer 500.
+     */
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+        .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+        .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+        .disable(StreamWriteFeature.FLUSH_PASSED_TO_STREAM)
+        .build();
+
+    /**
+     * Number of threads loading and refreshing cached listings, kept below the database pool size.
+     */
+    public static final int LOADER_THREADS = 2;
+
+    /**
+     * Number of listing loads that may wait for a loader thread; past that, cache misses are answered 503.
+     */
+    public static final int LOADER_QUEUE = 32;
+
+    /**
+     * Longest time a request waits for the load of a listing it missed before it is answered 503.
+     */
+    static final Duration LOAD_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Age after which a cached listing is reloaded in the background on its next read.
+     */
+    private static final Duration REFRESH_AFTER = Duration.ofSeconds(30);
+
+    /**
+     * Page size used when the client does not ask for one.
+     */
+    static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Largest page size a client may ask for.
+     */
+    static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Largest number of posts a client may create in one batch.
+     */
+    static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Number of full exports that may run at once, each holding a database connection for as long as the client reads.
+     */
+    static final int MAX_CONCURRENT_EXPORTS = 1;
+
+    /**
+     * Seconds after which a client refused an export may retry.
+     */
+    private static final long EXPORT_RETRY_AFTER_SECONDS = 30;
+
+    /**
+     * Longest time a full export may keep reading rows; a slower client gets a truncated array. Checked between
+     * rows only: a query slow to return a row is bounded by the statement timeout of the repository, and a write
+     * blocked on a client that stopped reading by the HTTP idle timeout of the server.
+     */
+    static final Duration MAX_EXPORT_DURATION = Duration.ofMinutes(10);
+
+    /**
+     * Cache-Control of the public listings and posts: shared caches may serve them for a few seconds, then
+     * revalidate them with their entity tag.
+     */
+    static final String CACHE_CONTROL = "public, max-age=10";
+
+    static final DateTimeFormatter HTTP_DATE_FORMATTER = 
         DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'")
             .withZone(ZoneId.of("GMT"));
 
@@ -47,13 +153,28 @@ public class PostController {
      * Authentication service for handling authentication.
      */
     private final AuthService authService;
-    private final Cache<String, List<Map<String, Object>>> postsCache;
-    
     /**
-     * Tracks last modification time for posts collection and individual posts.
-     * Key: "all" for collection, or post ID as string for individual posts.
+     * Encoded response bodies of the listings by date and of the first page of the global listing. Deeper pages are
+     * not cached: each cursor would get its own entry, and evict the dates. Loads run on the loader executor, at most
+     * one per key; entries older than {@link #REFRESH_AFTER} are reloaded in the background while the stale body
+     * keeps being served.
+     */
+    private final AsyncLoadingCache<PostsKey, CachedBody> postsCache;
+
+    /**
+     * Listings of today and tomorrow, served from memory once {@link #startDailySnapshot(Duration)} is called.
+     */
+    private final DailySnapshot dailySnapshot;
+
+    /**
+     * Clock giving the current date, in the time zone of the display dates.
+     */
+    private final Clock clock;
+
+    /**
+     * Permits of the running full exports.
      */
-    private final Map<String, Instant> lastModified = new ConcurrentHashMap<>();
+    private final Semaphore exports = new Semaphore(MAX_CONCURRENT_EXPORTS);
 
     /**
      * Constructor.
@@ -61,82 +182,401 @@ public class PostController {
      * @param authService authentication service
      */
     public PostController(PostService postService, AuthService authService) {
+        this(postService, authService, loaderExecutor(LOADER_THREADS, LOADER_QUEUE));
+    }
+
+    /**
+     * Creates an executor for the cache loads with a bounded queue: once it is full, a cache miss is rejected with an
+     * {@link OverloadedException} instead of waiting behind the others (a rejected refresh keeps the stale body).
+     * @param threads number of loader threads, kept below the database pool size
+     * @param queueCapacity number of loads that may wait for a loader thread
+     * @return the executor
+     */
+    public static Executor loaderExecutor(int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "posts-cache-loader");
+            t.setDaemon(true);
+            return t;
+        }, (r, executor) -> {
+            throw new OverloadedException("posts cache loader is overloaded", 1);
+        });
+    }
+
+    /**
+     * Constructor.
+     * @param postService post service
+     * @param authService authentication service
+     * @param loaderExecutor executor running the cache loads and background refreshes
+     */
+    public PostController(PostService postService, AuthService authService, Executor loaderExecutor) {
+        this(postService, authService, loaderExecutor, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor.
+     * @param postService post service
+     * @param authService authentication service
+     * @param loaderExecutor executor running the cache loads and background refreshes
+     * @param clock clock giving the current date, in the time zone of the display dates
+     */
+    PostController(PostService postService, AuthService authService, Executor loaderExecutor, Clock clock) {
         this.postService = postService;
         this.authService = authService;
         this.postsCache = Caffeine.newBuilder()
+            .refreshAfterWrite(REFRESH_AFTER)
             .expireAfterWrite(Duration.ofSeconds(60))
             .maximumSize(100)
-            .build();
+            .executor(loaderExecutor)
+            .buildAsync(this::load);
+        this.dailySnapshot = new DailySnapshot(postService, clock);
+        this.clock = clock;
+    }
+
+    /**
+     * Loads the listings of today and tomorrow and keeps them in memory from now on.
+     * @param refreshInterval delay between two reloads, which pick up posts written by other instances
+     */
+    public void startDailySnapshot(Duration refreshInterval) {
+        dailySnapshot.start(refreshInterval);
     }
 
     /**
-     * Lists all existing posts.
+     * Lists posts, either one page of all posts (newest first) or every post for a given display date.
      * @param ctx Javalin context
      */
     @OpenApi(
         path = "/posts",
         methods = HttpMethod.GET,
-        summary = "List all posts",
+        summary = "List posts",
         tags = {"Posts"},
         queryParams = {
-            @OpenApiParam(name = "date", description = "Filter by display date (yyyy-mm-dd)", required = false)
+            @OpenApiParam(name = "date", description = "Filter by display date (yyyy-mm-dd)", required = false),
+            @OpenApiParam(name = "cursor", description = "Opaque cursor returned as 'next' by the previous page", required = false),
+            @OpenApiParam(name = "limit", type = Integer.class, description = "Page size (1-" + MAX_PAGE_SIZE + ", default " + DEFAULT_PAGE_SIZE + ")", required = false)
         },
         responses = {
-            @OpenApiResponse(status = "200", description = "List of posts"),
-            @OpenApiResponse(status = "400", description = "Invalid date format")
+            @OpenApiResponse(status = "200", description = "Page of posts, or list of posts for the given date"),
+            @OpenApiResponse(status = "304", description = "The cached copy named by If-None-Match is current"),
+            @OpenApiResponse(status = "400", description = "Invalid date format, cursor or limit")
         }
     )
     public void list(Context ctx) {
         try {
-            String dateParam = ctx.queryParam("date");
+            String dateParam = ctx.queryParam(ApiConstants.Params.DATE);
             LocalDate date = null;
             if (dateParam != null) {
                 try {
                     date = LocalDate.parse(dateParam);
                 } catch (DateTimeParseException e) {
-                    ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, "invalid.date.format"));
+                    Json.error(ctx, 400, ApiConstants.Errors.INVALID_DATE_FORMAT);
                     return;
                 }
             }
 
-            String ifModifiedSinceHeader = ctx.header("If-Modified-Since");
-            Instant collectionLastModified = lastModified.get("all");
-            
-            if (ifModifiedSinceHeader != null && collectionLastModified != null) {
+            String cursorParam = ctx.queryParam(ApiConstants.Params.CURSOR);
+            PostCursor cursor = null;
+            if (cursorParam != null) {
                 try {
-                    ZonedDateTime ifModifiedSince = ZonedDateTime.parse(ifModifiedSinceHeader, HTTP_DATE_FORMATTER);
-                    if (!collectionLastModified.isAfter(ifModifiedSince.toInstant())) {
-                        ctx.status(304);
-                        return;
-                    }
-                } catch (DateTimeParseException e) {
-                    log.warn("Invalid If-Modified-Since header: {}", ifModifiedSinceHeader);
+                    cursor = PostCursor.decode(cursorParam);
+                } catch (IllegalArgumentException e) {
+                    Json.error(ctx, 400, ApiConstants.Errors.INVALID_CURSOR);
+                    return;
                 }
             }
 
-            String cacheKey = date != null ? "posts_" + date : POSTS_CACHE_KEY;
-            LocalDate finalDate = date;
-            List<Map<String, Object>> out = postsCache.get(cacheKey, key -> {
-                List<Post> posts = finalDate != null ? postService.findByDate(finalDate) : postService.findAll();
-                return posts.stream().map(p -> {
-                    Map<String, Object> m = new HashMap<>();
-                    m.put("id", p.getId());
-                    m.put("authorId", p.getAuthorId());
-                    m.put(ApiConstants.Keys.CONTENT, p.getContent());
-                    m.put("createdAt", p.getCreatedAt().toString());
-                    m.put("displayAt", p.getDisplayAt().toString());
-                    return m;
-                }).collect(Collectors.toList());
-            });
-            
-            if (collectionLastModified != null) {
-                ctx.header("Last-Modified", HTTP_DATE_FORMATTER.format(collectionLastModified));
+            String limitParam = ctx.queryParam(ApiConstants.Params.LIMIT);
+            int limit = DEFAULT_PAGE_SIZE;
+            if (limitParam != null) {
+                try {
+                    limit = Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    limit = -1;
+                }
+                if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                    Json.error(ctx, 400, ApiConstants.Errors.INVALID_LIMIT);
+                    return;
+                }
             }
-            
-            ctx.json(out);
+
+            CachedBody snapshot = date != null ? dailySnapshot.get(date) : null;
+            if (snapshot != null) {
+                write(ctx, snapshot);
+                return;
+            }
+
+            if (date == null && (cursor != null || limit != DEFAULT_PAGE_SIZE)) {
+                // not cached: read on the request thread, behind the database bulkhead
+                write(ctx, encode(loadPage(cursor, limit)));
+                return;
+            }
+
+            PostsKey cacheKey = date != null ? PostsKey.forDate(date) : PostsKey.FIRST_PAGE;
+            CompletableFuture<CachedBody> out = postsCache.get(cacheKey);
+            if (out.isDone() && !out.isCompletedExceptionally()) {
+                write(ctx, out.join());
+                return;
+            }
+            // cache miss: release the request thread while the (shared) load runs; the copy times out on its own
+            ctx.future(() -> out.copy().orTimeout(LOAD_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS).handle((body, error) -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof OverloadedException overload) {
+                    Json.overloaded(ctx, overload);
+                } else if (cause instanceof TimeoutException) {
+                    Json.overloaded(ctx, new OverloadedException("posts load timed out", 1));
+                } else if (cause != null) {
+                    log.error("Unexpected error loading posts {}", cacheKey, cause);
+                    Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
+                } else {
+                    write(ctx, body);
+                }
+                return null;
+            }));
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
         } catch (Exception e) {
             log.error("Unexpected error in list posts", e);
-            ctx.status(500).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INTERNAL_ERROR));
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
+        }
+    }
+
+    /**
+     * Streams every post, newest first, as one JSON array. Each post is written to the response as it is read from a
+     * database cursor, so memory use does not depend on the number of posts. Requires authentication, and stops
+     * after {@link #MAX_EXPORT_DURATION}.
+     * @param ctx Javalin context
+     */
+    @OpenApi(
+        path = "/posts/export",
+        methods = HttpMethod.GET,
+        summary = "Export all posts",
+        description = "Every post, newest first, streamed as a single JSON array. Use GET /posts to browse.",
+        tags = {"Posts"},
+        security = @OpenApiSecurity(name = "bearerAuth"),
+        responses = {
+            @OpenApiResponse(status = "200", description = "Array of every post"),
+            @OpenApiResponse(status = "401", description = "Unauthorized"),
+            @OpenApiResponse(status = "503", description = "Another export is running")
+        }
+    )
+    public void export(Context ctx) {
+        Long uid = ctx.attribute("uid");
+        if (uid == null) { Json.error(ctx, 401, ApiConstants.Errors.UNAUTHORIZED); return; }
+        if (!exports.tryAcquire()) {
+            Json.overloaded(ctx, new OverloadedException("export already running", EXPORT_RETRY_AFTER_SECONDS));
+            return;
+        }
+        JsonGenerator json = null;
+        try {
+            ctx.contentType(ContentType.APPLICATION_JSON);
+            // the servlet stream itself: Javalin's compressing stream could not be reset along with the buffer
+            json = JSON_FACTORY.createGenerator(ctx.res().getOutputStream());
+            JsonGenerator out = json;
+            out.writeStartArray();
+            long deadline = clock.millis() + MAX_EXPORT_DURATION.toMillis();
+            postService.streamAll(p -> {
+                // a slow reader must not hold the cursor, its connection and the export permit indefinitely
+                if (clock.millis() > deadline) throw new IllegalStateException("export exceeded " + MAX_EXPORT_DURATION);
+                try {
+                    POST_WRITER.writeValue(out, PostDetailsDto.of(p));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.writeEndArray();
+        } catch (Exception e) {
+            // checked before the generator is flushed, which could fill the response buffer and commit it
+            if (ctx.res().isCommitted()) {
+                // the status line is gone: all that is left is to cut the array short
+                log.warn("Export aborted after the response started: {}", e.toString());
+                return;
+            }
+            // drop the rows buffered so far, and the generator with what it still holds, unflushed
+            ctx.res().resetBuffer();
+            json = null;
+            if (e instanceof OverloadedException overload) {
+                Json.overloaded(ctx, overload);
+            } else {
+                log.error("Unexpected error in export posts", e);
+                Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
+            }
+        } finally {
+            close(json);
+            exports.release();
+        }
+    }
+
+    /**
+     * Closes an export generator, flushing what it buffered; a client gone meanwhile is not an error here.
+     * @param json generator, or null if it was not created
+     */
+    private static void close(JsonGenerator json) {
+        if (json == null) return;
+        try {
+            json.close();
+        } catch (IOException e) {
+            log.debug("Could not flush the export: {}", e.toString());
+        }
+    }
+
+    /**
+     * Evicts the cached responses a write to a post displayed on the given date can change:
+     * the entry for that date and the first page of the global listing. Other dates are kept.
+     * @param displayAt display date of the written post
+     */
+    private void invalidate(LocalDate displayAt) {
+        postsCache.synchronous().invalidateAll(List.of(PostsKey.forDate(displayAt), PostsKey.FIRST_PAGE));
+    }
+
+    /**
+     * Loads and encodes the listing identified by the given key.
+     * @param key cache key
+     * @return encoded body
+     */
+    private CachedBody load(PostsKey key) {
+        return key.isPage()
+            ? encode(loadPage(null, DEFAULT_PAGE_SIZE))
+            : encode(toDtos(postService.findByDate(key.date())));
+    }
+
+    /**
+     * Loads one page of posts. One extra row is fetched to know whether a next page exists.
+     * @param cursor cursor of the previous page, or null for the first page
+     * @param limit page size
+     * @return response body holding the posts and the cursor of the next page (null on the last page)
+     */
+    private PostPageDto loadPage(PostCursor cursor, int limit) {
+        List<Post> posts = postService.findPage(cursor, limit + 1);
+        String next = null;
+        if (posts.size() > limit) {
+            posts = posts.subList(0, limit);
+            next = PostCursor.after(posts.get(limit - 1)).encode();
+        }
+        return new PostPageDto(toDtos(posts), next);
+    }
+
+    /**
+     * Serializes a listing once, so that cache hits only copy bytes.
+     * @param posts posts of the listing
+     * @return encoded body
+     */
+    static CachedBody encode(List<PostDetailsDto> posts) {
+        return CachedBody.of(Json.encode(LIST_WRITER, posts));
+    }
+
+    /**
+     * Serializes a page of the global listing once, so that cache hits only copy bytes.
+     * @param page page
+     * @return encoded body
+     */
+    static CachedBody encode(PostPageDto page) {
+        return CachedBody.of(Json.encode(PAGE_WRITER, page));
+    }
+
+    /**
+     * Writes an encoded body, using its gzip copy when the client accepts it, or 304 when the client's copy, named
+     * by If-None-Match, is current.
+     * @param ctx Javalin context
+     * @param body encoded body
+     */
+    private static void write(Context ctx, CachedBody body) {
+        boolean gzip = false;
+        if (body.gzip() != null) {
+            ctx.header("Vary", "Accept-Encoding");
+            gzip = acceptsGzip(ctx);
+        }
+        String etag = gzip ? body.gzipEtag() : body.etag();
+        if (CachedBody.matches(ctx.header(ApiConstants.Headers.IF_NONE_MATCH), etag)) {
+            notModified(ctx, etag);
+            return;
+        }
+        ctx.header(ApiConstants.Headers.ETAG, etag);
+        ctx.header(ApiConstants.Headers.CACHE_CONTROL, CACHE_CONTROL);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        if (gzip) {
+            // Javalin leaves responses alone once Content-Encoding is set
+            ctx.header("Content-Encoding", "gzip");
+            ctx.result(body.gzip());
+            return;
+        }
+        ctx.result(body.json());
+    }
+
+    /**
+     * Answers 304: the client's copy, named by If-None-Match, is current.
+     * @param ctx Javalin context
+     * @param etag quoted entity tag of that copy
+     */
+    private static void notModified(Context ctx, String etag) {
+        ctx.header(ApiConstants.Headers.ETAG, etag);
+        ctx.header(ApiConstants.Headers.CACHE_CONTROL, CACHE_CONTROL);
+        ctx.status(304);
+    }
+
+    /**
+     * Tells whether the client accepts gzip-compressed bodies.
+     * @param ctx Javalin context
+     * @return true if Accept-Encoding lists gzip
+     */
+    private static boolean acceptsGzip(Context ctx) {
+        String acceptEncoding = ctx.header("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    /**
+     * Converts posts to their JSON representation.
+     * @param posts posts to convert
+     * @return representations, in the same order
+     */
+    static List<PostDetailsDto> toDtos(List<Post> posts) {
+        List<PostDetailsDto> out = new ArrayList<>(posts.size());
+        for (Post p : posts) out.add(PostDetailsDto.of(p));
+        return out;
+    }
+
+    @OpenApi(
+        path = "/posts/{id}",
+        methods = HttpMethod.GET,
+        summary = "Get a post",
+        tags = {"Posts"},
+        pathParams = @OpenApiParam(name = "id", type = Long.class, description = "Post ID", required = true),
+        headers = @OpenApiParam(name = "If-None-Match", description = "Entity tag of the cached copy", required = false),
+        responses = {
+            @OpenApiResponse(status = "200", description = "The post"),
+            @OpenApiResponse(status = "304", description = "The cached copy is current"),
+            @OpenApiResponse(status = "404", description = "Not found")
+        }
+    )
+    public void get(Context ctx) {
+        try {
+            long id;
+            try {
+                id = Long.parseLong(ctx.pathParam("id"));
+            } catch (NumberFormatException e) {
+                Json.error(ctx, 404, ApiConstants.Errors.NOT_FOUND);
+                return;
+            }
+            Optional<Post> op = postService.findById(id);
+            if (op.isEmpty()) { Json.error(ctx, 404, ApiConstants.Errors.NOT_FOUND); return; }
+            Post p = op.get();
+            ctx.header(ApiConstants.Headers.LAST_MODIFIED, HTTP_DATE_FORMATTER.format(p.getUpdatedAt()));
+            // the tags only depend on the version: a current copy is answered before the post is encoded and compressed
+            String etag = versionTag(p.getVersion());
+            String ifNoneMatch = ctx.header(ApiConstants.Headers.IF_NONE_MATCH);
+            if (acceptsGzip(ctx) && CachedBody.matches(ifNoneMatch, CachedBody.gzipEtag(etag))) {
+                ctx.header("Vary", "Accept-Encoding");
+                notModified(ctx, CachedBody.gzipEtag(etag));
+                return;
+            }
+            if (CachedBody.matches(ifNoneMatch, etag)) {
+                notModified(ctx, etag);
+                return;
+            }
+            write(ctx, CachedBody.of(Json.encode(POST_WRITER, PostDetailsDto.of(p)), etag));
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
+        } catch (Exception e) {
+            log.error("Unexpected error in get post", e);
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
         }
     }
 
@@ -156,40 +596,108 @@ public class PostController {
     public void create(Context ctx) {
         try {
             Long uid = ctx.attribute("uid");
-            if (uid == null) { ctx.status(401).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.UNAUTHORIZED)); return; }
+            if (uid == null) { Json.error(ctx, 401, ApiConstants.Errors.UNAUTHORIZED); return; }
 
             String content;
             try {
-                PostDto newPost = ctx.bodyAsClass(PostDto.class);
+                PostDto newPost = Json.read(ctx, POST_READER);
                 if (newPost == null || newPost.content() == null) {
-                    ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.EMPTY_CONTENT));
+                    Json.error(ctx, 400, ApiConstants.Errors.EMPTY_CONTENT);
                     return;
                 }
                 content = newPost.content();
             } catch (Exception e) {
                 log.warn("Failed to parse body as PostDto: {}", e.getMessage());
-                ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.EMPTY_CONTENT));
+                Json.error(ctx, 400, ApiConstants.Errors.EMPTY_CONTENT);
                 return;
             }
 
-            if (content == null || content.isBlank()) { ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.EMPTY_CONTENT)); return; }
+            if (content == null || content.isBlank()) { Json.error(ctx, 400, ApiConstants.Errors.EMPTY_CONTENT); return; }
             Post p = postService.create(uid, content);
             
-            Instant now = Instant.now();
-            lastModified.put(String.valueOf(p.getId()), now);
-            lastModified.put("all", now);
-            postsCache.invalidateAll();
+            invalidate(p.getDisplayAt());
+            dailySnapshot.put(p);
             
-            Map<String, Object> out = new HashMap<>();
-            out.put("id", p.getId());
-            out.put(ApiConstants.Keys.CONTENT, p.getContent());
-            out.put("authorId", p.getAuthorId());
-            ctx.status(201).json(out);
+            validators(ctx, p);
+            Json.send(ctx, 201, CREATED_WRITER, new CreatedPostDto(p.getId(), p.getAuthorId(), p.getContent()));
         } catch (NotFoundResponse e) {
-            ctx.status(404).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.NOT_FOUND));
+            Json.error(ctx, 404, ApiConstants.Errors.NOT_FOUND);
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
         } catch (Exception e) {
             log.error("Unexpected error in create post", e);
-            ctx.status(500).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INTERNAL_ERROR));
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
+        }
+    }
+
+    @OpenApi(
+        path = "/posts/batch",
+        methods = HttpMethod.POST,
+        summary = "Create several posts",
+        description = "Creates up to " + MAX_BATCH_SIZE + " posts at once, all or none of them. A post without displayAt is displayed tomorrow.",
+        tags = {"Posts"},
+        security = @OpenApiSecurity(name = "bearerAuth"),
+        requestBody = @OpenApiRequestBody(content = @OpenApiContent(from = NewPostDto[].class)),
+        responses = {
+            @OpenApiResponse(status = "201", description = "Posts created, in the order given"),
+            @OpenApiResponse(status = "401", description = "Unauthorized"),
+            @OpenApiResponse(status = "400", description = "Bad request (empty or too large batch, empty content, invalid or past display date)")
+        }
+    )
+    public void createBatch(Context ctx) {
+        try {
+            Long uid = ctx.attribute("uid");
+            if (uid == null) { Json.error(ctx, 401, ApiConstants.Errors.UNAUTHORIZED); return; }
+
+            NewPostDto[] batch;
+            try {
+                batch = Json.read(ctx, BATCH_READER);
+            } catch (Exception e) {
+                log.warn("Failed to parse body as NewPostDto[]: {}", e.getMessage());
+                batch = null;
+            }
+            if (batch == null || batch.length == 0 || batch.length > MAX_BATCH_SIZE) {
+                Json.error(ctx, 400, ApiConstants.Errors.INVALID_BATCH);
+                return;
+            }
+
+            LocalDate tomorrow = LocalDate.now(clock).plusDays(1);
+            List<NewPost> posts = new ArrayList<>(batch.length);
+            for (NewPostDto dto : batch) {
+                if (dto == null || dto.content() == null || dto.content().isBlank()) {
+                    Json.error(ctx, 400, ApiConstants.Errors.EMPTY_CONTENT);
+                    return;
+                }
+                LocalDate displayAt = null;
+                if (dto.displayAt() != null) {
+                    try {
+                        displayAt = LocalDate.parse(dto.displayAt());
+                    } catch (DateTimeParseException e) {
+                        Json.error(ctx, 400, ApiConstants.Errors.INVALID_DATE_FORMAT);
+                        return;
+                    }
+                    // like a single post, a scheduled post is never shown on the day it is written
+                    if (displayAt.isBefore(tomorrow)) {
+                        Json.error(ctx, 400, ApiConstants.Errors.INVALID_DISPLAY_DATE);
+                        return;
+                    }
+                }
+                posts.add(new NewPost(dto.content(), displayAt));
+            }
+
+            List<Post> created = postService.createAll(uid, posts);
+
+            created.stream().map(Post::getDisplayAt).distinct().forEach(this::invalidate);
+            dailySnapshot.putAll(created);
+
+            Json.send(ctx, 201, BATCH_WRITER, new PostListDto(toDtos(created)));
+        } catch (NotFoundResponse e) {
+            Json.error(ctx, 404, ApiConstants.Errors.NOT_FOUND);
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
+        } catch (Exception e) {
+            log.error("Unexpected error in create posts", e);
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
         }
     }
 
@@ -199,57 +707,51 @@ public class PostController {
         summary = "Update a post",
         tags = {"Posts"},
         security = @OpenApiSecurity(name = "bearerAuth"),
-        pathParams = @OpenApiParam(name = "id", type = Long.class, description = "Post ID"),
+        pathParams = @OpenApiParam(name = "id", type = Long.class, description = "Post ID", required = true),
+        headers = {
+            @OpenApiParam(name = "If-Match", description = "ETag of the version to write (from GET /posts/{id} or a previous write)", required = false),
+            @OpenApiParam(name = "If-Unmodified-Since", description = "Only write if the post was not modified after this date", required = false)
+        },
         requestBody = @OpenApiRequestBody(content = @OpenApiContent(from = PostDto.class)),
         responses = {
             @OpenApiResponse(status = "200", description = "Post updated"),
             @OpenApiResponse(status = "401", description = "Unauthorized"),
             @OpenApiResponse(status = "403", description = "Forbidden"),
-            @OpenApiResponse(status = "404", description = "Not found")
+            @OpenApiResponse(status = "404", description = "Not found"),
+            @OpenApiResponse(status = "412", description = "The post does not match If-Match or If-Unmodified-Since")
         }
     )
     public void update(Context ctx) {
         try {
             Long uid = ctx.attribute("uid");
-            if (uid == null) { ctx.status(401).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.UNAUTHORIZED)); return; }
+            if (uid == null) { Json.error(ctx, 401, ApiConstants.Errors.UNAUTHORIZED); return; }
             long id = Long.parseLong(ctx.pathParam("id"));
-            Optional<Post> op = postService.findById(id);
-            if (op.isEmpty()) { ctx.status(404).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.NOT_FOUND)); return; }
-            Post p = op.get();
-            if (p.getAuthorId() != uid) { ctx.status(403).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.FORBIDDEN)); return; }
-            
-            String ifUnmodifiedSinceHeader = ctx.header("If-Unmodified-Since");
-            Instant postLastModified = lastModified.get(String.valueOf(id));
-            
-            if (ifUnmodifiedSinceHeader != null && postLastModified != null) {
-                try {
-                    ZonedDateTime ifUnmodifiedSince = ZonedDateTime.parse(ifUnmodifiedSinceHeader, HTTP_DATE_FORMATTER);
-                    if (postLastModified.isAfter(ifUnmodifiedSince.toInstant())) {
-                        ctx.status(412).json(Map.of(ApiConstants.Keys.ERROR, "precondition.failed"));
-                        return;
-                    }
-                } catch (DateTimeParseException e) {
-                    log.warn("Invalid If-Unmodified-Since header: {}", ifUnmodifiedSinceHeader);
-                }
+            Precondition precondition = precondition(ctx);
+            if (precondition == null) { Json.error(ctx, 412, ApiConstants.Errors.PRECONDITION_FAILED); return; }
+            String content;
+            try {
+                PostDto body = Json.read(ctx, POST_READER);
+                content = body == null ? null : body.content();
+            } catch (Exception e) {
+                log.warn("Failed to parse body as PostDto: {}", e.getMessage());
+                content = null;
             }
+            if (content == null || content.isBlank()) { Json.error(ctx, 400, ApiConstants.Errors.EMPTY_CONTENT); return; }
+            // ownership and precondition are checked by the UPDATE itself, so that nothing can change in between
+            WriteResult result = postService.updateContent(id, uid, content, precondition);
+            if (failed(ctx, result)) return;
+            Post p = result.post();
             
-            Map body = ctx.bodyAsClass(Map.class);
-            String content = (String) body.get(ApiConstants.Keys.CONTENT);
-            if (content == null || content.isBlank()) { ctx.status(400).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.EMPTY_CONTENT)); return; }
-            p = postService.updateContent(id, content);
+            invalidate(p.getDisplayAt());
+            dailySnapshot.put(p);
             
-            Instant now = Instant.now();
-            lastModified.put(String.valueOf(id), now);
-            lastModified.put("all", now);
-            postsCache.invalidateAll();
-            
-            Map<String, Object> out = new HashMap<>();
-            out.put("id", p.getId());
-            out.put(ApiConstants.Keys.CONTENT, p.getContent());
-            ctx.json(out);
+            validators(ctx, p);
+            Json.send(ctx, 200, UPDATED_WRITER, new UpdatedPostDto(p.getId(), p.getContent()));
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
         } catch (Exception e) {
             log.error("Unexpected error in update post", e);
-            ctx.status(500).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INTERNAL_ERROR));
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
         }
     }
 
@@ -259,50 +761,118 @@ public class PostController {
         summary = "Delete a post",
         tags = {"Posts"},
         security = @OpenApiSecurity(name = "bearerAuth"),
-        pathParams = @OpenApiParam(name = "id", type = Long.class, description = "Post ID"),
+        pathParams = @OpenApiParam(name = "id", type = Long.class, description = "Post ID", required = true),
+        headers = {
+            @OpenApiParam(name = "If-Match", description = "ETag of the version to write (from GET /posts/{id} or a previous write)", required = false),
+            @OpenApiParam(name = "If-Unmodified-Since", description = "Only write if the post was not modified after this date", required = false)
+        },
         responses = {
             @OpenApiResponse(status = "204", description = "Post deleted"),
             @OpenApiResponse(status = "401", description = "Unauthorized"),
             @OpenApiResponse(status = "403", description = "Forbidden"),
-            @OpenApiResponse(status = "404", description = "Not found")
+            @OpenApiResponse(status = "404", description = "Not found"),
+            @OpenApiResponse(status = "412", description = "The post does not match If-Match or If-Unmodified-Since")
         }
     )
     public void delete(Context ctx) {
         try {
             Long uid = ctx.attribute("uid");
-            if (uid == null) { ctx.status(401).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.UNAUTHORIZED)); return; }
+            if (uid == null) { Json.error(ctx, 401, ApiConstants.Errors.UNAUTHORIZED); return; }
             long id = Long.parseLong(ctx.pathParam("id"));
-            Optional<Post> op = postService.findById(id);
-            if (op.isEmpty()) { ctx.status(404).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.NOT_FOUND)); return; }
-            Post p = op.get();
-            if (p.getAuthorId() != uid) { ctx.status(403).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.FORBIDDEN)); return; }
-            
-            String ifUnmodifiedSinceHeader = ctx.header("If-Unmodified-Since");
-            Instant postLastModified = lastModified.get(String.valueOf(id));
+            Precondition precondition = precondition(ctx);
+            if (precondition == null) { Json.error(ctx, 412, ApiConstants.Errors.PRECONDITION_FAILED); return; }
+            WriteResult result = postService.delete(id, uid, precondition);
+            if (failed(ctx, result)) return;
+            Post p = result.post();
             
-            if (ifUnmodifiedSinceHeader != null && postLastModified != null) {
-                try {
-                    ZonedDateTime ifUnmodifiedSince = ZonedDateTime.parse(ifUnmodifiedSinceHeader, HTTP_DATE_FORMATTER);
-                    if (postLastModified.isAfter(ifUnmodifiedSince.toInstant())) {
-                        ctx.status(412).json(Map.of(ApiConstants.Keys.ERROR, "precondition.failed"));
-                        return;
-                    }
-                } catch (DateTimeParseException e) {
-                    log.warn("Invalid If-Unmodified-Since header: {}", ifUnmodifiedSinceHeader);
-                }
-            }
-            
-            postService.delete(id);
-            
-            Instant now = Instant.now();
-            lastModified.remove(String.valueOf(id));
-            lastModified.put("all", now);
-            postsCache.invalidateAll();
+            invalidate(p.getDisplayAt());
+            dailySnapshot.remove(id, p.getDisplayAt());
             
             ctx.status(204);
+        } catch (OverloadedException e) {
+            Json.overloaded(ctx, e);
         } catch (Exception e) {
             log.error("Unexpected error in delete post", e);
-            ctx.status(500).json(Map.of(ApiConstants.Keys.ERROR, ApiConstants.Errors.INTERNAL_ERROR));
+            Json.error(ctx, 500, ApiConstants.Errors.INTERNAL_ERROR);
+        }
+    }
+
+    /**
+     * Builds the entity tag of a version of a post. It is what clients send back in If-Match to update or delete that
+     * version only.
+     * @param version version of the post
+     * @return quoted strong entity tag
+     */
+    static String versionTag(long version) {
+        return "\"v" + version + '"';
+    }
+
+    /**
+     * Reads the precondition of a write from If-Match (a single entity tag from {@link #versionTag(long)}, or
+     * {@code *}) or, when absent, from If-Unmodified-Since; an unparsable date is ignored, as RFC 9110 requires.
+     * @param ctx Javalin context
+     * @return the precondition, or null if it can never hold (a weak or foreign entity tag)
+     */
+    static Precondition precondition(Context ctx) {
+        String ifMatch = ctx.header(ApiConstants.Headers.IF_MATCH);
+        if (ifMatch != null) {
+            String tag = ifMatch.trim();
+            if (tag.equals("*")) return Precondition.NONE;
+            // the gzip representation of a version carries the same version
+            if (tag.endsWith("-gz\"")) tag = tag.substring(0, tag.length() - 4) + '"';
+            if (!tag.startsWith("\"v") || !tag.endsWith("\"") || tag.length() < 4) return null;
+            try {
+                return Precondition.ifMatch(Long.parseLong(tag.substring(2, tag.length() - 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        String ifUnmodifiedSince = ctx.header(ApiConstants.Headers.IF_UNMODIFIED_SINCE);
+        if (ifUnmodifiedSince != null) {
+            try {
+                return Precondition.ifUnmodifiedSince(ZonedDateTime.parse(ifUnmodifiedSince, HTTP_DATE_FORMATTER).toInstant());
+            } catch (DateTimeParseException e) {
+                log.warn("Invalid If-Unmodified-Since header: {}", ifUnmodifiedSince);
+            }
         }
+        return Precondition.NONE;
+    }
+
+    /**
+     * Responds to a write that did not happen.
+     * @param ctx Javalin context
+     * @param result result of the write
+     * @return true if the write did not happen and the response was sent
+     */
+    private static boolean failed(Context ctx, WriteResult result) {
+        switch (result.status()) {
+            case OK -> { return false; }
+            case NOT_FOUND -> Json.error(ctx, 404, ApiConstants.Errors.NOT_FOUND);
+            case FORBIDDEN -> Json.error(ctx, 403, ApiConstants.Errors.FORBIDDEN);
+            case PRECONDITION_FAILED -> Json.error(ctx, 412, ApiConstants.Errors.PRECONDITION_FAILED);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the validators of a written post, so that the client can make its next write conditional.
+     * @param ctx Javalin context
+     * @param p written post
+     */
+    private static void validators(Context ctx, Post p) {
+        ctx.header(ApiConstants.Headers.ETAG, versionTag(p.getVersion()));
+        ctx.header(ApiConstants.Headers.LAST_MODIFIED, HTTP_DATE_FORMATTER.format(p.getUpdatedAt()));
+    }
+
+    /**
+     * Key of a cached listing: either every post of one display date, or the first page of the global listing.
+     * @param date display date, or null for the first page of the global listing
+     */
+    private record PostsKey(LocalDate date) {
+        static final PostsKey FIRST_PAGE = new PostsKey(null);
+
+        static PostsKey forDate(LocalDate date) { return new PostsKey(date); }
+
+        boolean isPage() { return date == null; }
     }
 }
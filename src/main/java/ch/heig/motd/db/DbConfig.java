@@ -1,17 +1,36 @@
 package ch.heig.motd.db;
 
+import ch.heig.motd.concurrent.Bulkhead;
+import ch.heig.motd.config.Env;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Database configuration utility.
  */
 public class DbConfig {
+    /**
+     * Logger instance for logging.
+     */
+    private static final Logger log = LoggerFactory.getLogger(DbConfig.class);
+
     /**
      * Create a DataSource from environment variables.
+     * <p>
+     * Besides the connection settings, the pool and the PostgreSQL driver can be tuned with:
+     * {@code DB_POOL_SIZE} (default: 2 * cores + 1), {@code DB_MIN_IDLE} (default: pool size),
+     * {@code DB_CONNECTION_TIMEOUT_MS} (default: 30000), {@code DB_MAX_LIFETIME_MS} (default: 1800000),
+     * {@code DB_SOCKET_TIMEOUT_S} (default: 30), {@code DB_PREPARE_THRESHOLD} (default: 5),
+     * {@code DB_PREPARED_STATEMENT_CACHE_QUERIES} (default: 256), {@code DB_REWRITE_BATCHED_INSERTS} (default: true)
+     * and {@code DB_DEFAULT_ROW_FETCH_SIZE} (default: 0, i.e. fetch all rows at once).
      * @return DataSource instance
      */
     public static DataSource createFromEnv() {
@@ -23,23 +42,96 @@ public class DbConfig {
             String user = Optional.ofNullable(System.getenv("DB_USER")).orElse("motd");
             String pass = Optional.ofNullable(System.getenv("DB_PASSWORD")).orElse("motd");
             jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, db);
-            HikariConfig cfg = new HikariConfig();
-            cfg.setJdbcUrl(jdbcUrl);
-            cfg.setUsername(user);
-            cfg.setPassword(pass);
-            cfg.addDataSourceProperty("socketTimeout", "30");
-            cfg.setMaximumPoolSize(5);
-            return new HikariDataSource(cfg);
+            return createPool("primary", jdbcUrl, user, pass);
         } else {
-            HikariConfig cfg = new HikariConfig();
-            cfg.setJdbcUrl(jdbcUrl);
             // optional user/pass from env
-            String user = System.getenv("DB_USER");
-            String pass = System.getenv("DB_PASSWORD");
-            if (user != null) cfg.setUsername(user);
-            if (pass != null) cfg.setPassword(pass);
-            cfg.setMaximumPoolSize(5);
-            return new HikariDataSource(cfg);
+            return createPool("primary", jdbcUrl, System.getenv("DB_USER"), System.getenv("DB_PASSWORD"));
+        }
+    }
+
+    /**
+     * Create the router for read-only queries from environment variables.
+     * <p>
+     * {@code DB_READ_URLS} is an optional comma-separated list of replica JDBC URLs, using the same credentials,
+     * pool settings and bulkhead limits as the primary. {@code DB_READ_STICKY_MS} (default: 5000) is how long reads
+     * stay on the primary after a write, and {@code DB_READ_HEALTH_CHECK_MS} (default: 5000) the delay between two
+     * replica health checks. Without replicas, every read goes to the primary.
+     * @param primary primary data source
+     * @return the read router
+     */
+    public static ReadReplicaRouter readRouterFromEnv(DataSource primary) {
+        String urls = System.getenv("DB_READ_URLS");
+        if (urls == null || urls.isBlank()) return ReadReplicaRouter.primaryOnly(primary);
+        String user = Optional.ofNullable(System.getenv("DB_USER")).orElse("motd");
+        String pass = Optional.ofNullable(System.getenv("DB_PASSWORD")).orElse("motd");
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) continue;
+            replicas.add(limitFromEnv(createPool("replica-" + replicas.size(), url.trim(), user, pass)));
         }
+        ReadReplicaRouter router = new ReadReplicaRouter(primary, replicas, Duration.ofMillis(Env.getInt("DB_READ_STICKY_MS", 5000)));
+        router.startHealthChecks(Duration.ofMillis(Env.getInt("DB_READ_HEALTH_CHECK_MS", 5000)));
+        return router;
+    }
+
+    /**
+     * Create a connection pool, tuned from environment variables.
+     * @param name pool name, used in logs
+     * @param jdbcUrl JDBC URL
+     * @param user database user, or null to rely on the URL
+     * @param pass database password, or null to rely on the URL
+     * @return the pool
+     */
+    private static HikariDataSource createPool(String name, String jdbcUrl, String user, String pass) {
+        HikariConfig cfg = new HikariConfig();
+        cfg.setPoolName(name);
+        cfg.setJdbcUrl(jdbcUrl);
+        if (user != null) cfg.setUsername(user);
+        if (pass != null) cfg.setPassword(pass);
+
+        int poolSize = Env.getInt("DB_POOL_SIZE", Runtime.getRuntime().availableProcessors() * 2 + 1);
+        cfg.setMaximumPoolSize(poolSize);
+        cfg.setMinimumIdle(Env.getInt("DB_MIN_IDLE", poolSize));
+        cfg.setConnectionTimeout(Env.getInt("DB_CONNECTION_TIMEOUT_MS", 30_000));
+        cfg.setMaxLifetime(Env.getInt("DB_MAX_LIFETIME_MS", 1_800_000));
+
+        cfg.addDataSourceProperty("socketTimeout", String.valueOf(Env.getInt("DB_SOCKET_TIMEOUT_S", 30)));
+        cfg.addDataSourceProperty("prepareThreshold", String.valueOf(Env.getInt("DB_PREPARE_THRESHOLD", 5)));
+        cfg.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(Env.getInt("DB_PREPARED_STATEMENT_CACHE_QUERIES", 256)));
+        cfg.addDataSourceProperty("reWriteBatchedInserts", String.valueOf(Env.getBoolean("DB_REWRITE_BATCHED_INSERTS", true)));
+        cfg.addDataSourceProperty("defaultRowFetchSize", String.valueOf(Env.getInt("DB_DEFAULT_ROW_FETCH_SIZE", 0)));
+
+        log.info("Database pool {}: url={} maxPoolSize={} minIdle={} connectionTimeoutMs={} maxLifetimeMs={} driverProperties={}",
+            name, withoutQuery(cfg.getJdbcUrl()), cfg.getMaximumPoolSize(), cfg.getMinimumIdle(), cfg.getConnectionTimeout(),
+            cfg.getMaxLifetime(), cfg.getDataSourceProperties());
+        return new HikariDataSource(cfg);
+    }
+
+    /**
+     * Wraps a DataSource with a bulkhead configured from environment variables:
+     * {@code DB_MAX_CONCURRENCY} (concurrent database operations, default: the pool size, or 5 for other data sources),
+     * {@code DB_MAX_QUEUED} (operations allowed to wait, default 50) and
+     * {@code DB_QUEUE_TIMEOUT_MS} (maximum wait, default 1000).
+     * @param ds data source to protect
+     * @return the limited data source
+     */
+    public static DataSource limitFromEnv(DataSource ds) {
+        int defaultConcurrency = ds instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 5;
+        int maxConcurrency = Env.getInt("DB_MAX_CONCURRENCY", defaultConcurrency);
+        int maxQueued = Env.getInt("DB_MAX_QUEUED", 50);
+        int queueTimeoutMs = Env.getInt("DB_QUEUE_TIMEOUT_MS", 1000);
+        log.info("Database bulkhead: maxConcurrency={} maxQueued={} queueTimeoutMs={}", maxConcurrency, maxQueued, queueTimeoutMs);
+        Bulkhead bulkhead = new Bulkhead("database", maxConcurrency, maxQueued, Duration.ofMillis(queueTimeoutMs));
+        return new LimitedDataSource(ds, bulkhead);
+    }
+
+    /**
+     * Strips the query string of a JDBC URL, which may carry credentials, before logging it.
+     * @param jdbcUrl JDBC URL
+     * @return the URL without its query string
+     */
+    static String withoutQuery(String jdbcUrl) {
+        int query = jdbcUrl.indexOf('?');
+        return query < 0 ? jdbcUrl : jdbcUrl.substring(0, query);
     }
 }
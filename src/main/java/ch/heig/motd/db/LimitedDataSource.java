@@ -0,0 +1,114 @@
+package ch.heig.motd.db;
+
+import ch.heig.motd.concurrent.Bulkhead;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * DataSource wrapper that puts a {@link Bulkhead} in front of connection checkouts.
+ * <p>
+ * A permit is taken when a connection is obtained and given back when it is closed, so the bulkhead bounds the
+ * number of in-flight database operations and sheds excess load with an
+ * {@link ch.heig.motd.concurrent.OverloadedException} instead of letting callers pile up in the pool.
+ */
+public class LimitedDataSource implements DataSource {
+    /**
+     * Underlying data source.
+     */
+    private final DataSource delegate;
+
+    /**
+     * Bulkhead guarding connection checkouts.
+     */
+    private final Bulkhead bulkhead;
+
+    /**
+     * Constructor.
+     * @param delegate underlying data source
+     * @param bulkhead bulkhead guarding connection checkouts
+     */
+    public LimitedDataSource(DataSource delegate, Bulkhead bulkhead) {
+        this.delegate = delegate;
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        bulkhead.acquire();
+        try {
+            return releasingOnClose(delegate.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        bulkhead.acquire();
+        try {
+            return releasingOnClose(delegate.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps a connection so that closing it (once) releases its bulkhead permit.
+     * @param connection connection to wrap
+     * @return wrapped connection
+     */
+    private Connection releasingOnClose(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                try {
+                    connection.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) bulkhead.release();
+                }
+                return null;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException { return delegate.getLogWriter(); }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException { delegate.setLogWriter(out); }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException { delegate.setLoginTimeout(seconds); }
+
+    @Override
+    public int getLoginTimeout() throws SQLException { return delegate.getLoginTimeout(); }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException { return delegate.getParentLogger(); }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        return delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,202 @@
+package ch.heig.motd.db;
+
+import ch.heig.motd.concurrent.OverloadedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.LongSupplier;
+
+/**
+ * DataSource for read-only queries that spreads them over read replicas, round-robin.
+ * <p>
+ * Replicas failing a health check (or a connection attempt) are skipped until a later check succeeds; when no
+ * replica is healthy, reads go to the primary. After a write, reads also go to the primary for a short
+ * "sticky" window, so that a client reading right after its own write does not hit a lagging replica. The window
+ * is process-wide rather than per user, because listings loaded during that window populate the shared posts cache.
+ */
+public class ReadReplicaRouter implements DataSource {
+    /**
+     * Logger instance for logging.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicaRouter.class);
+
+    /**
+     * Primary data source, used for writes and as a fallback for reads.
+     */
+    private final DataSource primary;
+
+    /**
+     * Read replicas.
+     */
+    private final List<DataSource> replicas;
+
+    /**
+     * Health of each replica (1 healthy, 0 unhealthy), indexed like {@link #replicas}.
+     */
+    private final AtomicIntegerArray healthy;
+
+    /**
+     * Round-robin counter.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * How long reads stick to the primary after a write, in nanoseconds.
+     */
+    private final long stickyNanos;
+
+    /**
+     * Monotonic clock, in nanoseconds.
+     */
+    private final LongSupplier nanoClock;
+
+    /**
+     * Instant (per {@link #nanoClock}) until which reads go to the primary.
+     */
+    private volatile long stickyUntil;
+
+    /**
+     * Constructor.
+     * @param primary primary data source
+     * @param replicas read replicas
+     * @param stickiness how long reads stick to the primary after a write
+     */
+    public ReadReplicaRouter(DataSource primary, List<DataSource> replicas, Duration stickiness) {
+        this(primary, replicas, stickiness, System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     * @param primary primary data source
+     * @param replicas read replicas
+     * @param stickiness how long reads stick to the primary after a write
+     * @param nanoClock monotonic clock, in nanoseconds
+     */
+    ReadReplicaRouter(DataSource primary, List<DataSource> replicas, Duration stickiness, LongSupplier nanoClock) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.healthy = new AtomicIntegerArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) healthy.set(i, 1);
+        this.stickyNanos = stickiness.toNanos();
+        this.nanoClock = nanoClock;
+        this.stickyUntil = nanoClock.getAsLong();
+    }
+
+    /**
+     * Creates a router without replicas: every read goes to the primary.
+     * @param primary primary data source
+     * @return the router
+     */
+    public static ReadReplicaRouter primaryOnly(DataSource primary) {
+        return new ReadReplicaRouter(primary, List.of(), Duration.ZERO);
+    }
+
+    /**
+     * Records that a write just happened, so that reads go to the primary for the sticky window.
+     */
+    public void markWrite() {
+        if (!replicas.isEmpty()) stickyUntil = nanoClock.getAsLong() + stickyNanos;
+    }
+
+    /**
+     * Starts checking the replicas periodically on a background daemon thread.
+     * @param interval delay between two checks
+     */
+    public void startHealthChecks(Duration interval) {
+        if (replicas.isEmpty()) return;
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "read-replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkHealth, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks every replica once and updates its health.
+     */
+    void checkHealth() {
+        for (int i = 0; i < replicas.size(); i++) {
+            boolean ok;
+            try (Connection c = replicas.get(i).getConnection()) {
+                ok = c.isValid(2);
+            } catch (SQLException | RuntimeException e) {
+                ok = false;
+            }
+            int previous = healthy.getAndSet(i, ok ? 1 : 0);
+            if (previous != (ok ? 1 : 0)) log.warn("Read replica {} is now {}", i, ok ? "healthy" : "unhealthy");
+        }
+    }
+
+    /**
+     * Tells whether a replica is currently considered healthy.
+     * @param index replica index
+     * @return true if healthy
+     */
+    boolean isHealthy(int index) {
+        return healthy.get(index) == 1;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (replicas.isEmpty() || nanoClock.getAsLong() - stickyUntil < 0) return primary.getConnection();
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int n = 0; n < replicas.size(); n++) {
+            int i = (start + n) % replicas.size();
+            if (healthy.get(i) == 0) continue;
+            try {
+                return replicas.get(i).getConnection();
+            } catch (SQLException e) {
+                log.warn("Read replica {} failed, marking it unhealthy", i, e);
+                healthy.set(i, 0);
+            } catch (OverloadedException e) {
+                // saturated, not broken: try the next replica, and this one again on the next read
+                log.debug("Read replica {} is saturated", i);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("per-call credentials are not supported");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException { return primary.getLogWriter(); }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException { primary.setLogWriter(out); }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException { primary.setLoginTimeout(seconds); }
+
+    @Override
+    public int getLoginTimeout() throws SQLException { return primary.getLoginTimeout(); }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException { return primary.getParentLogger(); }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,9 @@
+package ch.heig.motd.dto;
+
+/**
+ * Response body of a post creation.
+ * @param id id of the new post
+ * @param authorId author id
+ * @param content content of the post
+ */
+public record CreatedPostDto(long id, long authorId, String content) { }
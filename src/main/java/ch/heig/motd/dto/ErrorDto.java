@@ -0,0 +1,7 @@
+package ch.heig.motd.dto;
+
+/**
+ * Error response body.
+ * @param error error code, one of {@code ApiConstants.Errors}
+ */
+public record ErrorDto(String error) { }
@@ -0,0 +1,7 @@
+package ch.heig.motd.dto;
+
+/**
+ * Informational response body.
+ * @param message message code
+ */
+public record MessageDto(String message) { }
@@ -0,0 +1,8 @@
+package ch.heig.motd.dto;
+
+/**
+ * Scheduled post data transfer object, one element of a batch.
+ * @param content content of the post
+ * @param displayAt display date (yyyy-mm-dd), or null for tomorrow
+ */
+public record NewPostDto(String content, String displayAt) { }
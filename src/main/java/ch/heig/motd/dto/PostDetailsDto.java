@@ -0,0 +1,25 @@
+package ch.heig.motd.dto;
+
+import ch.heig.motd.model.Post;
+
+/**
+ * Post as returned by the listings and by {@code GET /posts/{id}}.
+ * @param id post id
+ * @param authorId author id
+ * @param content content of the post
+ * @param createdAt creation instant (ISO-8601)
+ * @param displayAt display date (yyyy-mm-dd)
+ * @param version version, incremented on every update
+ * @param updatedAt last modification instant (ISO-8601)
+ */
+public record PostDetailsDto(long id, long authorId, String content, String createdAt, String displayAt, long version, String updatedAt) {
+    /**
+     * Builds the representation of a post.
+     * @param p post
+     * @return the representation
+     */
+    public static PostDetailsDto of(Post p) {
+        return new PostDetailsDto(p.getId(), p.getAuthorId(), p.getContent(), p.getCreatedAt().toString(),
+            p.getDisplayAt().toString(), p.getVersion(), p.getUpdatedAt().toString());
+    }
+}
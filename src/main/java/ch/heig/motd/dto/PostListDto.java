@@ -0,0 +1,9 @@
+package ch.heig.motd.dto;
+
+import java.util.List;
+
+/**
+ * Posts created by one batch.
+ * @param posts created posts, in the order given
+ */
+public record PostListDto(List<PostDetailsDto> posts) { }
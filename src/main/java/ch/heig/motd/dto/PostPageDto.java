@@ -0,0 +1,10 @@
+package ch.heig.motd.dto;
+
+import java.util.List;
+
+/**
+ * One page of the global listing.
+ * @param posts posts of the page, newest first
+ * @param next cursor of the next page, or null on the last page
+ */
+public record PostPageDto(List<PostDetailsDto> posts, String next) { }
@@ -0,0 +1,7 @@
+package ch.heig.motd.dto;
+
+/**
+ * Response body of a login.
+ * @param token signed JWT
+ */
+public record TokenDto(String token) { }
@@ -0,0 +1,8 @@
+package ch.heig.motd.dto;
+
+/**
+ * Response body of a post update.
+ * @param id post id
+ * @param content new content of the post
+ */
+public record UpdatedPostDto(long id, String content) { }
@@ -0,0 +1,9 @@
+package ch.heig.motd.dto;
+
+/**
+ * Registered user, without credentials.
+ * @param id user id
+ * @param username username
+ * @param createdAt registration instant (ISO-8601)
+ */
+public record UserDto(long id, String username, String createdAt) { }
@@ -0,0 +1,11 @@
+package ch.heig.motd.model;
+
+import java.time.LocalDate;
+
+/**
+ * Post to be created as part of a batch.
+ *
+ * @param content   content of the post
+ * @param displayAt date the post is displayed on, or null for tomorrow
+ */
+public record NewPost(String content, LocalDate displayAt) { }
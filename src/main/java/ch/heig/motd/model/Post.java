@@ -32,6 +32,16 @@ public class Post {
      */
     private LocalDate displayAt;
 
+    /**
+     * Version of the post, incremented by every update.
+     */
+    private final long version;
+
+    /**
+     * Instant of the last modification of the post.
+     */
+    private final Instant updatedAt;
+
     /**
      * Constructor.
      *
@@ -42,11 +52,28 @@ public class Post {
      * @param displayAt date when the post should be displayed
      */
     public Post(long id, long authorId, String content, Instant createdAt, LocalDate displayAt) {
+        this(id, authorId, content, createdAt, displayAt, 1, createdAt);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param id        id of the post
+     * @param authorId  id of the author
+     * @param content   content of the post
+     * @param createdAt instant when the post was created
+     * @param displayAt date when the post should be displayed
+     * @param version   version of the post
+     * @param updatedAt instant of the last modification of the post
+     */
+    public Post(long id, long authorId, String content, Instant createdAt, LocalDate displayAt, long version, Instant updatedAt) {
         this.id = id;
         this.authorId = authorId;
         this.content = content;
         this.createdAt = createdAt;
         this.displayAt = displayAt;
+        this.version = version;
+        this.updatedAt = updatedAt;
     }
 
     /**
@@ -102,4 +129,22 @@ public class Post {
     public LocalDate getDisplayAt() {
         return displayAt;
     }
+
+    /**
+     * Gets the version of the post.
+     *
+     * @return version, incremented by every update
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the instant of the last modification of the post.
+     *
+     * @return instant of the last modification
+     */
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
 }
@@ -0,0 +1,51 @@
+package ch.heig.motd.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position in the posts listing, used for keyset pagination on (created_at, id).
+ * <p>
+ * Clients only ever see the opaque {@link #encode() encoded} form.
+ *
+ * @param createdAt creation instant of the last post of the previous page
+ * @param id        id of the last post of the previous page
+ */
+public record PostCursor(Instant createdAt, long id) {
+    /**
+     * Builds the cursor pointing right after the given post.
+     * @param post last post of a page
+     * @return cursor for the next page
+     */
+    public static PostCursor after(Post post) {
+        return new PostCursor(post.getCreatedAt(), post.getId());
+    }
+
+    /**
+     * Encodes the cursor as an opaque, URL-safe string.
+     * @return encoded cursor
+     */
+    public String encode() {
+        String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a cursor previously produced by {@link #encode()}.
+     * @param encoded encoded cursor
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static PostCursor decode(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.US_ASCII);
+            String[] parts = raw.split(":");
+            if (parts.length != 3) throw new IllegalArgumentException("malformed cursor");
+            Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new PostCursor(createdAt, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("malformed cursor", e);
+        }
+    }
+}
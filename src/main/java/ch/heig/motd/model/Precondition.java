@@ -0,0 +1,35 @@
+package ch.heig.motd.model;
+
+import java.time.Instant;
+
+/**
+ * Condition a post must meet for a write to apply, checked by the database in the write statement itself.
+ *
+ * @param version         version the post must have (from If-Match), or null
+ * @param unmodifiedSince instant the post must not have been modified after, at second precision
+ *                        (from If-Unmodified-Since), or null
+ */
+public record Precondition(Long version, Instant unmodifiedSince) {
+    /**
+     * No condition: the write applies to any version of the post.
+     */
+    public static final Precondition NONE = new Precondition(null, null);
+
+    /**
+     * Requires the post to have the given version.
+     * @param version expected version
+     * @return the precondition
+     */
+    public static Precondition ifMatch(long version) {
+        return new Precondition(version, null);
+    }
+
+    /**
+     * Requires the post not to have been modified after the given instant.
+     * @param instant HTTP date sent by the client
+     * @return the precondition
+     */
+    public static Precondition ifUnmodifiedSince(Instant instant) {
+        return new Precondition(null, instant);
+    }
+}
@@ -0,0 +1,41 @@
+package ch.heig.motd.model;
+
+/**
+ * Outcome of a conditional write to a post.
+ *
+ * @param status what happened
+ * @param post   the post as written (as it was before a delete), or null unless {@code status} is {@link Status#OK}
+ */
+public record WriteResult(Status status, Post post) {
+    /**
+     * What happened to a write.
+     */
+    public enum Status {
+        /** The post was written. */
+        OK,
+        /** No post has this id. */
+        NOT_FOUND,
+        /** The post belongs to another user. */
+        FORBIDDEN,
+        /** The post does not meet the precondition of the write. */
+        PRECONDITION_FAILED
+    }
+
+    /**
+     * Builds the result of a successful write.
+     * @param post the post as written
+     * @return the result
+     */
+    public static WriteResult ok(Post post) {
+        return new WriteResult(Status.OK, post);
+    }
+
+    /**
+     * Builds the result of a write that did not happen.
+     * @param status reason, anything but {@link Status#OK}
+     * @return the result
+     */
+    public static WriteResult failed(Status status) {
+        return new WriteResult(status, null);
+    }
+}
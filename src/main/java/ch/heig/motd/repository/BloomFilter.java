@@ -0,0 +1,123 @@
+package ch.heig.motd.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of strings: {@link #mightContain(String)} never answers false for an added key, and
+ * answers true for a key that was never added with a probability close to the configured false positive rate, as
+ * long as no more than the expected number of keys are added.
+ */
+final class BloomFilter {
+    /**
+     * Bits of the filter.
+     */
+    private final AtomicLongArray words;
+
+    /**
+     * Number of bits.
+     */
+    private final long bitCount;
+
+    /**
+     * Number of bits set per key.
+     */
+    private final int hashCount;
+
+    /**
+     * Number of keys added (approximate when keys are added more than once).
+     */
+    private final AtomicLong insertions = new AtomicLong();
+
+    /**
+     * Creates a filter sized for the given number of keys and false positive rate.
+     * @param expectedInsertions expected number of keys
+     * @param fpp target false positive rate, between 0 and 1
+     */
+    BloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions < 1) throw new IllegalArgumentException("expectedInsertions must be positive");
+        if (!(fpp > 0 && fpp < 1)) throw new IllegalArgumentException("fpp must be between 0 and 1");
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds a key.
+     * @param key key
+     */
+    void put(String key) {
+        long hash = hash(key);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            int index = (int) (bit >>> 6);
+            if ((words.get(index) & mask) == 0) words.getAndAccumulate(index, mask, (a, b) -> a | b);
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * Tells whether a key may have been added.
+     * @param key key
+     * @return false if the key was definitely never added
+     */
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the size of the filter.
+     * @return number of bits
+     */
+    long bitSize() {
+        return bitCount;
+    }
+
+    /**
+     * Estimates the current false positive rate from the number of keys added so far.
+     * @return estimated false positive rate
+     */
+    double expectedFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions.get() / bitCount), hashCount);
+    }
+
+    /**
+     * Hashes a key (64-bit FNV-1a over its UTF-8 bytes).
+     * @param key key
+     * @return hash
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Spreads the bits of a hash (MurmurHash3 finalizer).
+     * @param h hash
+     * @return mixed hash
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,215 @@
+package ch.heig.motd.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * TokenStore decorator answering "not revoked" for most tokens without consulting the underlying store.
+ * <p>
+ * Every revocation is added to a Bloom filter; a token absent from the filter is definitely not revoked, and only
+ * the (few) possibly revoked tokens are looked up in the delegate. Filters cannot forget keys, so they are rotated
+ * every token lifetime: a revocation stays in the current filter, then in the previous one, which covers the whole
+ * lifetime of the revoked token, and is dropped at the second rotation.
+ * <p>
+ * When the delegate is shared by several instances, {@link #startSync(Duration, Duration)} keeps the filters in step
+ * with revocations made elsewhere; those are then seen at most one sync interval late.
+ */
+public class BloomFilterTokenStore implements TokenStore {
+    /**
+     * Logger instance for logging.
+     */
+    private static final Logger log = LoggerFactory.getLogger(BloomFilterTokenStore.class);
+
+    /**
+     * Overlap between two incremental syncs, covering commit latency and clock skew with the database.
+     */
+    static final Duration SYNC_OVERLAP = Duration.ofSeconds(10);
+
+    /**
+     * Filters currently in use.
+     * @param current filter receiving new revocations
+     * @param previous filter of the previous generation
+     */
+    private record Generations(BloomFilter current, BloomFilter previous) {}
+
+    /**
+     * Underlying store.
+     */
+    private final TokenStore delegate;
+
+    /**
+     * Expected number of revocations per generation.
+     */
+    private final long expectedRevocations;
+
+    /**
+     * Target false positive rate.
+     */
+    private final double fpp;
+
+    /**
+     * Filters currently in use, replaced as a whole on rotation.
+     */
+    private volatile Generations filters;
+
+    /**
+     * Instant of the start of the last sync with the delegate.
+     */
+    private volatile Instant lastSync;
+
+    /**
+     * Lookups answered by the filters.
+     */
+    private final Counter definiteMisses;
+
+    /**
+     * Lookups forwarded to the delegate.
+     */
+    private final Counter maybeRevoked;
+
+    /**
+     * Forwarded lookups for tokens that turned out not to be revoked.
+     */
+    private final Counter falsePositives;
+
+    /**
+     * Constructor.
+     * @param delegate underlying store
+     * @param expectedRevocations expected number of revocations per generation
+     * @param fpp target false positive rate
+     * @param registry meter registry
+     */
+    public BloomFilterTokenStore(TokenStore delegate, long expectedRevocations, double fpp, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.expectedRevocations = expectedRevocations;
+        this.fpp = fpp;
+        this.filters = new Generations(new BloomFilter(expectedRevocations, fpp), new BloomFilter(expectedRevocations, fpp));
+        this.definiteMisses = Counter.builder("token.revocation.bloom.lookups").tag("result", "definite_miss")
+            .description("Revocation lookups answered by the Bloom filter").register(registry);
+        this.maybeRevoked = Counter.builder("token.revocation.bloom.lookups").tag("result", "maybe")
+            .description("Revocation lookups forwarded to the token store").register(registry);
+        this.falsePositives = Counter.builder("token.revocation.bloom.false.positives")
+            .description("Forwarded lookups for tokens that were not revoked").register(registry);
+        Gauge.builder("token.revocation.bloom.fpp.target", () -> fpp).register(registry);
+        Gauge.builder("token.revocation.bloom.fpp.expected", () -> filters.current().expectedFpp())
+            .description("Estimated false positive rate of the current filter").register(registry);
+        Gauge.builder("token.revocation.bloom.memory", () -> (filters.current().bitSize() + filters.previous().bitSize()) / 8)
+            .baseUnit("bytes").register(registry);
+    }
+
+    @Override
+    public void revoke(String jti, Instant until) {
+        // add first: a false positive only costs a lookup, a false negative would accept a revoked token
+        filters.current().put(jti);
+        delegate.revoke(jti, until);
+    }
+
+    @Override
+    public boolean isRevoked(String jti) {
+        Generations f = filters;
+        if (!f.current().mightContain(jti) && !f.previous().mightContain(jti)) {
+            definiteMisses.increment();
+            return false;
+        }
+        maybeRevoked.increment();
+        boolean revoked = delegate.isRevoked(jti);
+        if (!revoked) falsePositives.increment();
+        return revoked;
+    }
+
+    @Override
+    public void forEachActive(Instant revokedSince, BiConsumer<String, Instant> action) {
+        delegate.forEachActive(revokedSince, action);
+    }
+
+    /**
+     * Starts a new generation: the current filter becomes the previous one, and the previous one is dropped.
+     */
+    synchronized void rotate() {
+        filters = new Generations(new BloomFilter(expectedRevocations, fpp), filters.current());
+    }
+
+    /**
+     * Rebuilds the filters from every active revocation of the delegate.
+     */
+    synchronized void resync() {
+        Instant started = Instant.now();
+        BloomFilter rebuilt = new BloomFilter(expectedRevocations, fpp);
+        delegate.forEachActive(null, (jti, until) -> rebuilt.put(jti));
+        // the replaced filter keeps the revocations made during the rebuild
+        filters = new Generations(rebuilt, filters.current());
+        lastSync = started;
+    }
+
+    /**
+     * Adds the revocations recorded by the delegate since the last sync (with some overlap) to the current filter.
+     */
+    synchronized void syncRecent() {
+        if (lastSync == null) {
+            resync();
+            return;
+        }
+        Instant started = Instant.now();
+        BloomFilter current = filters.current();
+        delegate.forEachActive(lastSync.minus(SYNC_OVERLAP), (jti, until) -> current.put(jti));
+        lastSync = started;
+    }
+
+    /**
+     * Starts rotating the filters on a background daemon thread.
+     * @param generation lifetime of a generation, at least the lifetime of a token
+     */
+    public void startRotation(Duration generation) {
+        scheduler("token-bloom-rotation").scheduleAtFixedRate(this::rotate,
+            generation.toMillis(), generation.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Loads every active revocation of the delegate, then keeps catching up with revocations made by other
+     * instances on a background daemon thread. The initial load is synchronous, so that no revoked token is
+     * accepted after a restart.
+     * @param interval delay between two incremental syncs
+     * @param fullResyncInterval delay between two full rebuilds, which also drop expired revocations early
+     */
+    public void startSync(Duration interval, Duration fullResyncInterval) {
+        resync();
+        ScheduledExecutorService scheduler = scheduler("token-bloom-sync");
+        scheduler.scheduleWithFixedDelay(() -> guarded(this::syncRecent), interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> guarded(this::resync), fullResyncInterval.toMillis(), fullResyncInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a sync, logging its failure instead of cancelling the schedule.
+     * @param sync sync to run
+     */
+    private static void guarded(Runnable sync) {
+        try {
+            sync.run();
+        } catch (RuntimeException e) {
+            log.warn("Token revocation filter sync failed", e);
+        }
+    }
+
+    /**
+     * Creates a single-threaded scheduler running on a daemon thread.
+     * @param name thread name
+     * @return the scheduler
+     */
+    private static ScheduledExecutorService scheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
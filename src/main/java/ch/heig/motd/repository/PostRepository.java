@@ -1,10 +1,15 @@
 package ch.heig.motd.repository;
 
+import ch.heig.motd.model.NewPost;
 import ch.heig.motd.model.Post;
+import ch.heig.motd.model.PostCursor;
+import ch.heig.motd.model.Precondition;
+import ch.heig.motd.model.WriteResult;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Repository interface for Post entity.
@@ -15,9 +20,19 @@ public interface PostRepository {
      * @param authorId author id
      * @param content post content
      * @return the saved post
+     * @throws UnknownAuthorException if no user has the given id
      */
     Post save(long authorId, String content);
 
+    /**
+     * Saves several posts of the same author at once, all or none of them.
+     * @param authorId author id
+     * @param posts posts to save
+     * @return the saved posts, in the order given
+     * @throws UnknownAuthorException if no user has the given id
+     */
+    List<Post> saveAll(long authorId, List<NewPost> posts);
+
     /**
      * Finds a post by its id.
      * @param id post id
@@ -31,24 +46,44 @@ public interface PostRepository {
      */
     List<Post> findAll();
 
+    /**
+     * Passes every post, newest first, to the given action as it is read, without holding them all in memory.
+     * @param action action run on each post, on the calling thread; an exception it throws stops the stream
+     */
+    void streamAll(Consumer<Post> action);
+
+    /**
+     * Finds one page of posts, newest first, using keyset pagination on (created_at, id).
+     * @param after cursor of the last post of the previous page, or null for the first page
+     * @param limit maximum number of posts to return
+     * @return the posts of the page
+     */
+    List<Post> findPage(PostCursor after, int limit);
+
     /**
      * Finds posts by display date.
      * @param date display date
-     * @return list of posts for the given date
+     * @return list of posts for the given date, newest first (ties broken by id)
      */
     List<Post> findByDisplayDate(LocalDate date);
 
     /**
-     * Deletes a post by its id.
+     * Deletes a post of the given author, if it meets the given precondition, checking both in the delete itself.
      * @param id post id
+     * @param authorId id of the user deleting the post
+     * @param precondition condition the post must meet
+     * @return the result, holding the deleted post if it was deleted
      */
-    void delete(long id);
+    WriteResult delete(long id, long authorId, Precondition precondition);
 
     /**
-     * Updates the content of a post.
+     * Updates the content of a post of the given author, if it meets the given precondition, and increments its
+     * version, checking both in the update itself.
      * @param id post id
+     * @param authorId id of the user updating the post
      * @param content new content
-     * @return the updated post
+     * @param precondition condition the post must meet
+     * @return the result, holding the updated post if it was updated
      */
-    Post updateContent(long id, String content);
+    WriteResult updateContent(long id, long authorId, String content, Precondition precondition);
 }
@@ -0,0 +1,112 @@
+package ch.heig.motd.repository;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Bulk export and import of the posts table with PostgreSQL {@code COPY}, as CSV with a header line.
+ * <p>
+ * Rows go straight between the stream and the driver, a buffer at a time, without building {@code Post} objects, so
+ * memory use does not depend on the size of the table.
+ */
+public class PostgresPostCopy {
+    /**
+     * Logger instance for logging.
+     */
+    private static final Logger log = LoggerFactory.getLogger(PostgresPostCopy.class);
+
+    /**
+     * Exported columns, in file order.
+     */
+    static final String COLUMNS = "id, author_id, content, created_at, display_at, version, updated_at";
+
+    static final String EXPORT_SQL = "COPY posts (" + COLUMNS + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+
+    static final String IMPORT_SQL = "COPY posts (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv, HEADER)";
+
+    /**
+     * Moves the id sequence past the imported ids, so that new posts do not collide with them.
+     */
+    static final String RESET_SEQUENCE_SQL =
+        "SELECT setval(pg_get_serial_sequence('posts', 'id'), (SELECT coalesce(max(id), 0) + 1 FROM posts), false)";
+
+    /**
+     * Data source for database connections.
+     */
+    private final DataSource ds;
+
+    /**
+     * Constructor.
+     * @param ds data source of the primary
+     */
+    public PostgresPostCopy(DataSource ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * Writes every post to the given stream.
+     * @param out destination, left open
+     * @return number of posts written
+     * @throws IOException if writing to the stream fails
+     */
+    public long exportCsv(OutputStream out) throws IOException {
+        try (Connection c = ds.getConnection()) {
+            long rows = copyManager(c).copyOut(EXPORT_SQL, out);
+            log.info("Exported {} posts", rows);
+            return rows;
+        } catch (SQLException e) {
+            log.error("Error exporting posts", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Loads posts written by {@link #exportCsv(OutputStream)}, all or none of them. Their ids are kept, so the table
+     * must not already hold them, and their authors must exist.
+     * @param in source, left open
+     * @return number of posts loaded
+     * @throws IOException if reading from the stream fails
+     */
+    public long importCsv(InputStream in) throws IOException {
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                long rows = copyManager(c).copyIn(IMPORT_SQL, in);
+                try (Statement st = c.createStatement()) {
+                    st.execute(RESET_SEQUENCE_SQL);
+                }
+                c.commit();
+                log.info("Imported {} posts", rows);
+                return rows;
+            } catch (SQLException | IOException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.error("Error importing posts", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the COPY API of a pooled connection.
+     * @param c connection, possibly wrapped by the pool
+     * @return the copy manager of the underlying driver connection
+     * @throws SQLException if the connection is not a PostgreSQL one
+     */
+    private static CopyManager copyManager(Connection c) throws SQLException {
+        return c.unwrap(PGConnection.class).getCopyAPI();
+    }
+}
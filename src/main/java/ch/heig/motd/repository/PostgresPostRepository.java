@@ -1,16 +1,24 @@
 package ch.heig.motd.repository;
 
+import ch.heig.motd.model.NewPost;
 import ch.heig.motd.model.Post;
+import ch.heig.motd.db.ReadReplicaRouter;
+import ch.heig.motd.model.PostCursor;
+import ch.heig.motd.model.Precondition;
+import ch.heig.motd.model.WriteResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * PostgreSQL implementation of PostRepository.
@@ -27,17 +35,49 @@ public class PostgresPostRepository implements PostRepository {
     private final DataSource ds;
 
     /**
-     * Constructor.
+     * Data source for read-only queries, possibly spread over read replicas.
+     */
+    private final ReadReplicaRouter reads;
+
+    /**
+     * SQLState raised by PostgreSQL when a foreign key constraint rejects a row.
+     */
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+
+    /**
+     * Rows fetched per round trip by {@link #streamAll(Consumer)}, which bounds the rows held in memory.
+     */
+    static final int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * Longest time {@link #streamAll(Consumer)} may wait for its caller between two fetches, or spend on one fetch
+     * (the first one included), before the server cancels it (or closes the session); bounds the cursor of a stalled
+     * export.
+     */
+    static final Duration STREAM_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * Constructor, sending every query to the given data source.
      * @param ds data source
      */
     public PostgresPostRepository(DataSource ds) {
+        this(ds, ReadReplicaRouter.primaryOnly(ds));
+    }
+
+    /**
+     * Constructor.
+     * @param ds data source for writes
+     * @param reads data source for read-only queries
+     */
+    public PostgresPostRepository(DataSource ds, ReadReplicaRouter reads) {
         this.ds = ds;
+        this.reads = reads;
     }
 
     @Override
     public Post save(long authorId, String content) {
         log.debug("Saving post for author {}", authorId);
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement("INSERT INTO posts(author_id, content, created_at, display_at) VALUES (?, ?, now(), current_date + 1) RETURNING id, created_at, display_at")) {
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement("INSERT INTO posts(author_id, content, created_at, display_at) VALUES (?, ?, now(), current_date + 1) RETURNING id, created_at, display_at, version, updated_at")) {
             ps.setLong(1, authorId);
             ps.setString(2, content);
             ResultSet rs = ps.executeQuery();
@@ -46,20 +86,65 @@ public class PostgresPostRepository implements PostRepository {
                 Instant created = rs.getTimestamp("created_at").toInstant();
                 LocalDate displayAt = rs.getDate("display_at").toLocalDate();
                 log.info("Post created id={} author={}", id, authorId);
-                return new Post(id, authorId, content, created, displayAt);
+                reads.markWrite();
+                return new Post(id, authorId, content, created, displayAt, rs.getLong("version"), rs.getTimestamp("updated_at").toInstant());
             }
             log.error("Insert returned no rows");
             throw new RuntimeException("insert failed");
         } catch (SQLException e) {
+            // The author_id foreign key is the existence check: no lookup before the insert
+            if (FOREIGN_KEY_VIOLATION.equals(e.getSQLState())) {
+                log.info("Rejected post for unknown author {}", authorId);
+                throw new UnknownAuthorException(authorId);
+            }
             log.error("Error saving post for author {}", authorId, e);
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public List<Post> saveAll(long authorId, List<NewPost> posts) {
+        log.debug("Saving {} posts for author {}", posts.size(), authorId);
+        String[] contents = new String[posts.size()];
+        Date[] displayDates = new Date[posts.size()];
+        for (int i = 0; i < contents.length; i++) {
+            NewPost post = posts.get(i);
+            contents[i] = post.content();
+            displayDates[i] = post.displayAt() == null ? null : Date.valueOf(post.displayAt());
+        }
+        // one statement whatever the batch size: two array parameters, unnested into rows, so the batch is atomic
+        // and costs a single round trip
+        String sql = "INSERT INTO posts(author_id, content, created_at, display_at) "
+            + "SELECT ?, t.content, now(), coalesce(t.display_at, current_date + 1) "
+            + "FROM unnest(?::text[], ?::date[]) WITH ORDINALITY AS t(content, display_at, n) ORDER BY t.n "
+            + "RETURNING id, author_id, content, created_at, display_at, version, updated_at";
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, authorId);
+            ps.setArray(2, c.createArrayOf("text", contents));
+            ps.setArray(3, c.createArrayOf("date", displayDates));
+            List<Post> saved = new ArrayList<>(contents.length);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) saved.add(map(rs));
+            }
+            // ids come from the sequence in insertion order
+            saved.sort(Comparator.comparingLong(Post::getId));
+            log.info("{} posts created author={}", saved.size(), authorId);
+            reads.markWrite();
+            return saved;
+        } catch (SQLException e) {
+            if (FOREIGN_KEY_VIOLATION.equals(e.getSQLState())) {
+                log.info("Rejected posts for unknown author {}", authorId);
+                throw new UnknownAuthorException(authorId);
+            }
+            log.error("Error saving {} posts for author {}", posts.size(), authorId, e);
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public Optional<Post> findById(long id) {
         log.debug("Finding post by id {}", id);
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT id, author_id, content, created_at, display_at FROM posts WHERE id = ?")) {
+        try (Connection c = reads.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT id, author_id, content, created_at, display_at, version, updated_at FROM posts WHERE id = ?")) {
             ps.setLong(1, id);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
@@ -72,7 +157,7 @@ public class PostgresPostRepository implements PostRepository {
     @Override
     public List<Post> findAll() {
         log.debug("Finding all posts");
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT id, author_id, content, created_at, display_at FROM posts ORDER BY created_at DESC")) {
+        try (Connection c = reads.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT id, author_id, content, created_at, display_at, version, updated_at FROM posts ORDER BY created_at DESC, id DESC")) {
             ResultSet rs = ps.executeQuery();
             List<Post> out = new ArrayList<>();
             while (rs.next()) out.add(map(rs));
@@ -80,10 +165,83 @@ public class PostgresPostRepository implements PostRepository {
         } catch (SQLException e) { log.error("Error finding all posts", e); throw new RuntimeException(e); }
     }
 
+    @Override
+    public void streamAll(Consumer<Post> action) {
+        log.debug("Streaming all posts");
+        try (Connection c = reads.getConnection()) {
+            // pgjdbc only honours the fetch size, with a server-side cursor, inside a transaction
+            c.setAutoCommit(false);
+            Throwable failure = null;
+            try {
+                try (Statement st = c.createStatement()) {
+                    // LOCAL: reset with the transaction, before the connection goes back to the pool
+                    st.execute("SET LOCAL idle_in_transaction_session_timeout = " + STREAM_TIMEOUT.toMillis());
+                    st.execute("SET LOCAL statement_timeout = " + STREAM_TIMEOUT.toMillis());
+                }
+                try (PreparedStatement ps = c.prepareStatement("SELECT id, author_id, content, created_at, display_at, version, updated_at FROM posts ORDER BY created_at DESC, id DESC")) {
+                    ps.setFetchSize(STREAM_FETCH_SIZE);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) action.accept(map(rs));
+                    }
+                }
+            } catch (Throwable e) {
+                failure = e;
+                throw e;
+            } finally {
+                endReadOnly(c, failure);
+            }
+        } catch (SQLException e) { log.error("Error streaming all posts", e); throw new RuntimeException(e); }
+    }
+
+    /**
+     * Ends a read-only transaction: nothing to commit, and the connection goes back to the pool in autocommit mode.
+     * On a connection already broken (timeout, aborted client...) this fails too; the failure is then attached to
+     * the one that ended the transaction rather than replacing it.
+     * @param c connection in a transaction
+     * @param failure what ended the transaction, or null if it completed
+     * @throws SQLException if the cleanup failed after a transaction that completed
+     */
+    private static void endReadOnly(Connection c, Throwable failure) throws SQLException {
+        SQLException cleanup = null;
+        try {
+            c.rollback();
+        } catch (SQLException e) {
+            cleanup = e;
+        }
+        try {
+            c.setAutoCommit(true);
+        } catch (SQLException e) {
+            if (cleanup == null) cleanup = e; else cleanup.addSuppressed(e);
+        }
+        if (cleanup == null) return;
+        if (failure == null) throw cleanup;
+        failure.addSuppressed(cleanup);
+    }
+
+    @Override
+    public List<Post> findPage(PostCursor after, int limit) {
+        log.debug("Finding posts page after {} (limit {})", after, limit);
+        String sql = after == null
+            ? "SELECT id, author_id, content, created_at, display_at, version, updated_at FROM posts ORDER BY created_at DESC, id DESC LIMIT ?"
+            : "SELECT id, author_id, content, created_at, display_at, version, updated_at FROM posts WHERE (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC LIMIT ?";
+        try (Connection c = reads.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            if (after != null) {
+                ps.setTimestamp(i++, Timestamp.from(after.createdAt()));
+                ps.setLong(i++, after.id());
+            }
+            ps.setInt(i, limit);
+            ResultSet rs = ps.executeQuery();
+            List<Post> out = new ArrayList<>(limit);
+            while (rs.next()) out.add(map(rs));
+            return out;
+        } catch (SQLException e) { log.error("Error finding posts page after {}", after, e); throw new RuntimeException(e); }
+    }
+
     @Override
     public List<Post> findByDisplayDate(LocalDate date) {
         log.debug("Finding posts by display date {}", date);
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT id, author_id, content, created_at, display_at FROM posts WHERE display_at = ? ORDER BY created_at DESC")) {
+        try (Connection c = reads.getConnection(); PreparedStatement ps = c.prepareStatement("SELECT id, author_id, content, created_at, display_at, version, updated_at FROM posts WHERE display_at = ? ORDER BY created_at DESC, id DESC")) {
             ps.setDate(1, Date.valueOf(date));
             ResultSet rs = ps.executeQuery();
             List<Post> out = new ArrayList<>();
@@ -93,24 +251,80 @@ public class PostgresPostRepository implements PostRepository {
     }
 
     @Override
-    public void delete(long id) {
-        log.debug("Deleting post {}", id);
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement("DELETE FROM posts WHERE id = ?")) {
-            ps.setLong(1, id);
-            ps.executeUpdate();
-        } catch (SQLException e) { log.error("Error deleting post {}", id, e); throw new RuntimeException(e); }
+    public WriteResult delete(long id, long authorId, Precondition precondition) {
+        log.debug("Deleting post {} of author {} ({})", id, authorId, precondition);
+        return write("DELETE FROM posts WHERE id = ? AND author_id = ?" + where(precondition)
+            + " RETURNING id, author_id, content, created_at, display_at, version, updated_at", id, authorId, precondition, null);
     }
 
     @Override
-    public Post updateContent(long id, String content) {
-        log.debug("Updating post {} content", id);
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement("UPDATE posts SET content = ? WHERE id = ? RETURNING id, author_id, content, created_at, display_at")) {
-            ps.setString(1, content);
-            ps.setLong(2, id);
+    public WriteResult updateContent(long id, long authorId, String content, Precondition precondition) {
+        log.debug("Updating post {} content of author {} ({})", id, authorId, precondition);
+        return write("UPDATE posts SET content = ?, version = version + 1, updated_at = now() WHERE id = ? AND author_id = ?" + where(precondition)
+            + " RETURNING id, author_id, content, created_at, display_at, version, updated_at", id, authorId, precondition, content);
+    }
+
+    /**
+     * Runs an ownership-checked write and tells why it did not happen, in a single statement: the write runs in a
+     * CTE, and the outer query reads the post as it was before it to tell a missing post from another user's post
+     * from a failed precondition.
+     * <p>
+     * The conditions are on the written row itself, not on the outer read, so that a concurrent write between the
+     * two is caught by the database's re-check of the updated row.
+     * @param writeSql UPDATE or DELETE statement, with the parameters [content,] id, author id, then the precondition's,
+     *                 returning every column of the post
+     * @param id post id
+     * @param authorId id of the user writing the post
+     * @param precondition condition the post must meet
+     * @param content new content, for an UPDATE, or null
+     * @return the result of the write
+     */
+    private WriteResult write(String writeSql, long id, long authorId, Precondition precondition, String content) {
+        String sql = "WITH written AS (" + writeSql + ") "
+            + "SELECT p.author_id AS owner, w.id, w.author_id, w.content, w.created_at, w.display_at, w.version, w.updated_at "
+            + "FROM posts p LEFT JOIN written w ON true WHERE p.id = ?";
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            if (content != null) ps.setString(i++, content);
+            ps.setLong(i++, id);
+            ps.setLong(i++, authorId);
+            i = bind(ps, i, precondition);
+            ps.setLong(i, id);
             ResultSet rs = ps.executeQuery();
-            if (rs.next()) return map(rs);
-            throw new RuntimeException("not found");
-        } catch (SQLException e) { log.error("Error updating post {}", id, e); throw new RuntimeException(e); }
+            if (!rs.next()) return WriteResult.failed(WriteResult.Status.NOT_FOUND);
+            if (rs.getObject("id") != null) {
+                reads.markWrite();
+                return WriteResult.ok(map(rs));
+            }
+            return WriteResult.failed(rs.getLong("owner") == authorId ? WriteResult.Status.PRECONDITION_FAILED : WriteResult.Status.FORBIDDEN);
+        } catch (SQLException e) { log.error("Error writing post {}", id, e); throw new RuntimeException(e); }
+    }
+
+    /**
+     * Builds the conditions of a write statement checking a precondition.
+     * @param precondition precondition
+     * @return SQL conditions to append to a WHERE clause, empty for {@link Precondition#NONE}
+     */
+    private static String where(Precondition precondition) {
+        StringBuilder sql = new StringBuilder();
+        if (precondition.version() != null) sql.append(" AND version = ?");
+        // HTTP dates have no fractional seconds
+        if (precondition.unmodifiedSince() != null) sql.append(" AND date_trunc('second', updated_at) <= ?");
+        return sql.toString();
+    }
+
+    /**
+     * Binds the parameters of the conditions built by {@link #where(Precondition)}.
+     * @param ps statement
+     * @param index index of the first parameter
+     * @param precondition precondition
+     * @return index of the next parameter
+     * @throws SQLException if a database error occurs
+     */
+    private static int bind(PreparedStatement ps, int index, Precondition precondition) throws SQLException {
+        if (precondition.version() != null) ps.setLong(index++, precondition.version());
+        if (precondition.unmodifiedSince() != null) ps.setTimestamp(index++, Timestamp.from(precondition.unmodifiedSince()));
+        return index;
     }
 
     /**
@@ -120,6 +334,7 @@ public class PostgresPostRepository implements PostRepository {
      * @throws SQLException if a database error occurs
      */
     private Post map(ResultSet rs) throws SQLException {
-        return new Post(rs.getLong("id"), rs.getLong("author_id"), rs.getString("content"), rs.getTimestamp("created_at").toInstant(), rs.getDate("display_at").toLocalDate());
+        return new Post(rs.getLong("id"), rs.getLong("author_id"), rs.getString("content"), rs.getTimestamp("created_at").toInstant(),
+            rs.getDate("display_at").toLocalDate(), rs.getLong("version"), rs.getTimestamp("updated_at").toInstant());
     }
 }
@@ -0,0 +1,191 @@
+package ch.heig.motd.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * PostgreSQL implementation of TokenStore, using the {@code revoked_tokens} table so that revocations survive
+ * restarts and are shared by every instance.
+ * <p>
+ * Lookups go through a local near-cache. A revocation is cached until it expires, since it cannot be undone. A token
+ * found not revoked is only cached for a short time: a logout handled by another instance becomes visible here at
+ * most that long after it happened.
+ */
+public class PostgresTokenStore implements TokenStore {
+    /**
+     * Logger instance for logging.
+     */
+    private static final Logger log = LoggerFactory.getLogger(PostgresTokenStore.class);
+
+    /**
+     * Maximum number of lookups kept in the near-cache.
+     */
+    static final int NEAR_CACHE_SIZE = 100_000;
+
+    /**
+     * Cached value of a token which is not revoked.
+     */
+    private static final Instant NOT_REVOKED = Instant.EPOCH;
+
+    /**
+     * Data source for database connections.
+     */
+    private final DataSource ds;
+
+    /**
+     * Near-cache of lookups: jti to the end of its revocation, or {@link #NOT_REVOKED}.
+     */
+    private final Cache<String, Instant> nearCache;
+
+    /**
+     * Constructor.
+     * @param ds data source (the primary: revocations must be read fresh)
+     * @param notRevokedTtl how long a token found not revoked is cached
+     */
+    public PostgresTokenStore(DataSource ds, Duration notRevokedTtl) {
+        this(ds, notRevokedTtl, Ticker.systemTicker());
+    }
+
+    /**
+     * Constructor.
+     * @param ds data source (the primary: revocations must be read fresh)
+     * @param notRevokedTtl how long a token found not revoked is cached
+     * @param ticker time source of the near-cache
+     */
+    PostgresTokenStore(DataSource ds, Duration notRevokedTtl, Ticker ticker) {
+        this.ds = ds;
+        long notRevokedNanos = notRevokedTtl.toNanos();
+        this.nearCache = Caffeine.newBuilder()
+            .maximumSize(NEAR_CACHE_SIZE)
+            .ticker(ticker)
+            .expireAfter(new Expiry<String, Instant>() {
+                @Override
+                public long expireAfterCreate(String jti, Instant until, long currentTime) {
+                    if (until == NOT_REVOKED) return notRevokedNanos;
+                    return Math.max(0, Duration.between(Instant.now(), until).toNanos());
+                }
+
+                @Override
+                public long expireAfterUpdate(String jti, Instant until, long currentTime, long currentDuration) {
+                    return expireAfterCreate(jti, until, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String jti, Instant until, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    }
+
+    @Override
+    public void revoke(String jti, Instant until) {
+        log.debug("Revoking token {} until {}", jti, until);
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO revoked_tokens(jti, expires_at) VALUES (?, ?) " +
+                "ON CONFLICT (jti) DO UPDATE SET expires_at = GREATEST(revoked_tokens.expires_at, EXCLUDED.expires_at), revoked_at = now()")) {
+            ps.setString(1, jti);
+            ps.setTimestamp(2, Timestamp.from(until));
+            ps.executeUpdate();
+        } catch (SQLException e) { log.error("Error revoking token {}", jti, e); throw new RuntimeException(e); }
+        nearCache.put(jti, until);
+    }
+
+    @Override
+    public boolean isRevoked(String jti) {
+        Instant until = nearCache.get(jti, this::load);
+        return until != NOT_REVOKED && until.isAfter(Instant.now());
+    }
+
+    @Override
+    public void forEachActive(Instant revokedSince, BiConsumer<String, Instant> action) {
+        String sql = "SELECT jti, expires_at FROM revoked_tokens WHERE expires_at > now()"
+            + (revokedSince == null ? "" : " AND revoked_at >= ?");
+        try (Connection c = ds.getConnection()) {
+            // stream the rows with a cursor instead of materializing every revocation at once
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setFetchSize(1000);
+                if (revokedSince != null) ps.setTimestamp(1, Timestamp.from(revokedSince));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) action.accept(rs.getString(1), rs.getTimestamp(2).toInstant());
+                }
+            } finally {
+                c.commit();
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) { log.error("Error listing token revocations", e); throw new RuntimeException(e); }
+    }
+
+    /**
+     * Loads the revocation of a token from the database.
+     * @param jti the token's unique identifier
+     * @return the end of its revocation, or {@link #NOT_REVOKED}
+     */
+    private Instant load(String jti) {
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(
+                "SELECT expires_at FROM revoked_tokens WHERE jti = ? AND expires_at > now()")) {
+            ps.setString(1, jti);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getTimestamp(1).toInstant() : NOT_REVOKED;
+            }
+        } catch (SQLException e) { log.error("Error checking token {}", jti, e); throw new RuntimeException(e); }
+    }
+
+    /**
+     * Deletes expired revocations, in batches so that no single statement holds locks on many rows for long.
+     * @param batchSize maximum number of rows deleted per statement
+     * @return number of deleted rows
+     */
+    int purgeExpired(int batchSize) {
+        int total = 0;
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(
+                "DELETE FROM revoked_tokens WHERE jti IN (SELECT jti FROM revoked_tokens WHERE expires_at <= now() LIMIT ?)")) {
+            ps.setInt(1, batchSize);
+            int deleted;
+            do {
+                deleted = ps.executeUpdate();
+                total += deleted;
+            } while (deleted == batchSize);
+        } catch (SQLException e) { log.error("Error purging expired revocations", e); throw new RuntimeException(e); }
+        return total;
+    }
+
+    /**
+     * Starts purging expired revocations periodically on a background daemon thread.
+     * @param interval delay between two purges
+     * @param batchSize maximum number of rows deleted per statement
+     */
+    public void startPurge(Duration interval, int batchSize) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "revoked-tokens-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                int deleted = purgeExpired(batchSize);
+                if (deleted > 0) log.info("Purged {} expired token revocations", deleted);
+            } catch (RuntimeException e) {
+                log.warn("Purge of expired token revocations failed", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -64,6 +64,16 @@ public class PostgresUserRepository implements UserRepository {
         } catch (SQLException e) { log.error("Error saving user {}", username, e); throw new RuntimeException(e); }
     }
 
+    @Override
+    public void updatePasswordHash(long id, String passwordHash) {
+        log.debug("Updating password hash of user {}", id);
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement("UPDATE users SET password_hash = ? WHERE id = ?")) {
+            ps.setString(1, passwordHash);
+            ps.setLong(2, id);
+            ps.executeUpdate();
+        } catch (SQLException e) { log.error("Error updating password hash of user {}", id, e); throw new RuntimeException(e); }
+    }
+
     @Override
     public void delete(long id) {
         log.debug("Deleting user {}", id);
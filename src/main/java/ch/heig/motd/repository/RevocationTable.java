@@ -0,0 +1,204 @@
+package ch.heig.motd.repository;
+
+/**
+ * Open-addressing hash table of revocations keyed by 128-bit ids, stored in a single {@code long[]}.
+ * <p>
+ * Each slot takes three consecutive longs: the high and low halves of the id and the expiry in epoch milliseconds,
+ * 0 marking a free slot. Linear probing keeps a lookup within one or two cache lines, without any object per entry.
+ * The table is not thread-safe: {@link TokenRevocationStore} guards it.
+ */
+final class RevocationTable {
+    /**
+     * Longs per slot.
+     */
+    private static final int STRIDE = 3;
+
+    /**
+     * Minimum number of slots.
+     */
+    private static final int MIN_CAPACITY = 64;
+
+    /**
+     * Slots, {@link #STRIDE} longs each; the number of slots is a power of two.
+     */
+    private long[] slots;
+
+    /**
+     * Number of used slots.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    RevocationTable() {
+        this.slots = new long[MIN_CAPACITY * STRIDE];
+    }
+
+    /**
+     * Gets the number of stored revocations.
+     * @return number of revocations
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the expiry of a revocation. Safe to call concurrently with writes as long as the caller discards the
+     * result when a write happened meanwhile: it never throws and always terminates.
+     * @param hi high half of the id
+     * @param lo low half of the id
+     * @return expiry in epoch milliseconds, or 0 if not found
+     */
+    long get(long hi, long lo) {
+        long[] s = slots;
+        int mask = s.length / STRIDE - 1;
+        int i = hash(hi, lo) & mask;
+        for (int probes = 0; probes <= mask; probes++, i = (i + 1) & mask) {
+            int base = i * STRIDE;
+            long expiry = s[base + 2];
+            if (expiry == 0) return 0;
+            if (s[base] == hi && s[base + 1] == lo) return expiry;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a revocation, replacing the expiry of an existing one.
+     * @param hi high half of the id
+     * @param lo low half of the id
+     * @param expiry expiry in epoch milliseconds, strictly positive
+     */
+    void put(long hi, long lo, long expiry) {
+        if ((size + 1) * 4L > (long) (slots.length / STRIDE) * 3) resize(slots.length / STRIDE * 2);
+        if (insert(slots, hi, lo, expiry)) size++;
+    }
+
+    /**
+     * Removes a revocation. The following entries of its probe sequence are shifted back into the hole instead of
+     * leaving a tombstone, so lookups never get longer; the table shrinks once it is less than 1/8 full.
+     * @param hi high half of the id
+     * @param lo low half of the id
+     * @return true if the revocation was present
+     */
+    boolean remove(long hi, long lo) {
+        long[] s = slots;
+        int mask = s.length / STRIDE - 1;
+        int hole = hash(hi, lo) & mask;
+        while (true) {
+            int base = hole * STRIDE;
+            if (s[base + 2] == 0) return false;
+            if (s[base] == hi && s[base + 1] == lo) break;
+            hole = (hole + 1) & mask;
+        }
+        for (int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+            int base = i * STRIDE;
+            if (s[base + 2] == 0) break;
+            int home = hash(s[base], s[base + 1]) & mask;
+            // the entry may move into the hole only if the hole lies on its probe sequence, from home to i
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                int to = hole * STRIDE;
+                s[to] = s[base];
+                s[to + 1] = s[base + 1];
+                s[to + 2] = s[base + 2];
+                hole = i;
+            }
+        }
+        int base = hole * STRIDE;
+        s[base] = 0;
+        s[base + 1] = 0;
+        s[base + 2] = 0;
+        size--;
+        if (size * 8L < mask + 1 && mask + 1 > MIN_CAPACITY) resize(capacityFor(size));
+        return true;
+    }
+
+    /**
+     * Visits the stored revocations.
+     * @param action called with the high half, the low half and the expiry of each revocation
+     */
+    void forEach(EntryConsumer action) {
+        for (int base = 0; base < slots.length; base += STRIDE) {
+            if (slots[base + 2] != 0) action.accept(slots[base], slots[base + 1], slots[base + 2]);
+        }
+    }
+
+    /**
+     * Receives the entries of the table.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        /**
+         * Receives an entry.
+         * @param hi high half of the id
+         * @param lo low half of the id
+         * @param expiry expiry in epoch milliseconds
+         */
+        void accept(long hi, long lo, long expiry);
+    }
+
+    /**
+     * Moves the revocations into a table with the given number of slots.
+     * @param capacity number of slots, a power of two
+     */
+    private void resize(int capacity) {
+        long[] next = new long[capacity * STRIDE];
+        for (int base = 0; base < slots.length; base += STRIDE) {
+            if (slots[base + 2] != 0) insert(next, slots[base], slots[base + 1], slots[base + 2]);
+        }
+        // published once fully built, so that concurrent optimistic readers never see a partial table
+        slots = next;
+    }
+
+    /**
+     * Inserts or updates a revocation in the given slots, which must have a free slot.
+     * @param s slots
+     * @param hi high half of the id
+     * @param lo low half of the id
+     * @param expiry expiry in epoch milliseconds
+     * @return true if a new slot was used
+     */
+    private static boolean insert(long[] s, long hi, long lo, long expiry) {
+        int mask = s.length / STRIDE - 1;
+        for (int i = hash(hi, lo) & mask; ; i = (i + 1) & mask) {
+            int base = i * STRIDE;
+            if (s[base + 2] == 0) {
+                s[base] = hi;
+                s[base + 1] = lo;
+                s[base + 2] = expiry;
+                return true;
+            }
+            if (s[base] == hi && s[base + 1] == lo) {
+                s[base + 2] = expiry;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Computes the number of slots for the given number of revocations (load factor at most 1/2 after shrinking).
+     * @param entries number of revocations
+     * @return number of slots, a power of two
+     */
+    private static int capacityFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < entries * 2L) capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * Hashes an id (MurmurHash3 finalizer of its folded halves).
+     * @param hi high half of the id
+     * @param lo low half of the id
+     * @return hash
+     */
+    private static int hash(long hi, long lo) {
+        long h = hi ^ Long.rotateLeft(lo, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -1,31 +1,333 @@
 package ch.heig.motd.repository;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
 
 /**
  * In-memory implementation of a token revocation store.
+ * <p>
+ * The jtis we issue are UUIDs: they are kept as two longs, with their expiry, in a primitive open-addressing
+ * {@link RevocationTable} (24 bytes per slot instead of a String, an Instant and a map node per entry). Lookups use
+ * optimistic reads and take no lock unless a write happens concurrently. Other jtis fall back to a regular map.
+ * <p>
+ * Expired revocations are dropped by a periodic sweep over a timer wheel: each revocation is also filed, as its two
+ * longs, in the slot of the tick at which it expires, so a sweep takes the slots of the elapsed ticks as a whole and
+ * only removes the revocations they hold instead of scanning the table. The write lock is held for one tick at a
+ * time, so the pause seen by lookups is bounded by the revocations expiring in one tick. Memory stays bounded by the
+ * active revocations whether or not revoked tokens are ever presented again.
  */
 public class TokenRevocationStore implements TokenStore {
     /**
-     * Map to store revoked token IDs (jti) and their expiration instants.
+     * Value of each lowercase hexadecimal digit, -1 for other characters below 128.
+     */
+    private static final byte[] HEX = new byte[128];
+
+    static {
+        Arrays.fill(HEX, (byte) -1);
+        for (int c = '0'; c <= '9'; c++) HEX[c] = (byte) (c - '0');
+        for (int c = 'a'; c <= 'f'; c++) HEX[c] = (byte) (c - 'a' + 10);
+    }
+
+    /**
+     * Empty wheel slot.
+     */
+    private static final long[] NO_IDS = new long[0];
+
+    /**
+     * Revocations of UUID jtis.
+     */
+    private final RevocationTable table = new RevocationTable();
+
+    /**
+     * Guards {@link #table}.
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Timer wheel: slot {@code tick % slots} holds the ids expiring during that tick (or a later round of it), as
+     * consecutive high and low halves. Guarded by {@link #lock}.
+     */
+    private final long[][] wheel;
+
+    /**
+     * Number of longs used in each slot of {@link #wheel}.
+     */
+    private final int[] wheelSizes;
+
+    /**
+     * Revocations of jtis which are not canonical UUIDs, and their expiration instants.
+     */
+    private final Map<String, Instant> others = new ConcurrentHashMap<>();
+
+    /**
+     * Width of a tick, in milliseconds.
      */
-    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+    private final long tickMillis;
+
+    /**
+     * Clock used to expire revocations.
+     */
+    private final Clock clock;
+
+    /**
+     * Last tick swept.
+     */
+    private long sweptTick;
+
+    /**
+     * Constructor, with one-minute ticks and a wheel spanning the 24 hours lifetime of a token.
+     */
+    public TokenRevocationStore() {
+        this(Duration.ofMinutes(1), Duration.ofHours(24), Clock.systemUTC());
+    }
+
+    /**
+     * Constructor.
+     * @param tick width of a tick, i.e. the sweep period and the expiry granularity
+     * @param horizon time span covered by one round of the wheel, typically the lifetime of a token
+     * @param clock clock used to expire revocations
+     */
+    TokenRevocationStore(Duration tick, Duration horizon, Clock clock) {
+        this.tickMillis = tick.toMillis();
+        if (tickMillis < 1) throw new IllegalArgumentException("tick must be at least 1ms");
+        int slots = (int) Math.min(Integer.MAX_VALUE, horizon.toMillis() / tickMillis + 1);
+        this.wheel = new long[slots][];
+        Arrays.fill(wheel, NO_IDS);
+        this.wheelSizes = new int[slots];
+        this.clock = clock;
+        this.sweptTick = tickOf(clock.millis()) - 1;
+    }
+
+    /**
+     * Exposes the number of stored revocations.
+     * @param registry meter registry
+     * @return this store
+     */
+    public TokenRevocationStore monitor(MeterRegistry registry) {
+        Gauge.builder("token.revocation.entries", this, TokenRevocationStore::size)
+            .description("Revocations held in memory").register(registry);
+        return this;
+    }
 
     @Override
     public void revoke(String jti, Instant until) {
-        revoked.put(jti, until);
+        // an expired token is rejected anyway
+        if (!until.isAfter(clock.instant())) return;
+        if (!revokeUuid(jti, until.toEpochMilli())) others.put(jti, until);
     }
 
     @Override
     public boolean isRevoked(String jti) {
-        Instant exp = revoked.get(jti);
-        if (exp == null) return false;
-        if (exp.isBefore(Instant.now())) {
-            revoked.remove(jti);
-            return false;
+        long expiry = uuidExpiry(jti);
+        if (expiry < 0) {
+            Instant exp = others.get(jti);
+            return exp != null && exp.isAfter(clock.instant());
+        }
+        // expired entries may still be there until the next sweep
+        return expiry > clock.millis();
+    }
+
+    /**
+     * Stores the revocation of a UUID jti.
+     * @param jti token id
+     * @param expiry expiry in epoch milliseconds
+     * @return false if the jti is not a canonical UUID, in which case nothing is stored
+     */
+    private boolean revokeUuid(String jti, long expiry) {
+        if (!hasUuidLayout(jti)) return false;
+        long a = hex(jti, 0, 8), b = hex(jti, 9, 13), c = hex(jti, 14, 18), d = hex(jti, 19, 23), e = hex(jti, 24, 36);
+        if ((a | b | c | d | e) < 0) return false;
+        long hi = a << 32 | b << 16 | c;
+        long lo = d << 48 | e;
+        long stamp = lock.writeLock();
+        try {
+            table.put(hi, lo, expiry);
+            file(slotOf(tickOf(expiry)), hi, lo);
+        } finally {
+            lock.unlockWrite(stamp);
         }
         return true;
     }
+
+    /**
+     * Looks up the revocation of a UUID jti. The id is parsed in place rather than into an array or a {@link UUID},
+     * so that lookups allocate nothing.
+     * @param jti token id
+     * @return expiry in epoch milliseconds, 0 if not revoked, or -1 if the jti is not a canonical UUID
+     */
+    private long uuidExpiry(String jti) {
+        if (!hasUuidLayout(jti)) return -1;
+        long a = hex(jti, 0, 8), b = hex(jti, 9, 13), c = hex(jti, 14, 18), d = hex(jti, 19, 23), e = hex(jti, 24, 36);
+        if ((a | b | c | d | e) < 0) return -1;
+        long hi = a << 32 | b << 16 | c;
+        long lo = d << 48 | e;
+        long stamp = lock.tryOptimisticRead();
+        long expiry = table.get(hi, lo);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                expiry = table.get(hi, lo);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return expiry;
+    }
+
+    @Override
+    public void forEachActive(Instant revokedSince, BiConsumer<String, Instant> action) {
+        // revocation times are not tracked: visit every active revocation
+        long now = clock.millis();
+        long stamp = lock.readLock();
+        try {
+            table.forEach((hi, lo, expiry) -> {
+                if (expiry > now) action.accept(new UUID(hi, lo).toString(), Instant.ofEpochMilli(expiry));
+            });
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        others.forEach((jti, until) -> { if (until.toEpochMilli() > now) action.accept(jti, until); });
+    }
+
+    /**
+     * Gets the number of stored revocations, expired ones not swept yet included.
+     * @return number of revocations
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return table.size() + others.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Drops the revocations expired during the ticks elapsed since the last sweep.
+     */
+    synchronized void sweep() {
+        long now = clock.millis();
+        long nowTick = tickOf(now);
+        // a revocation expiring during the current tick is only dropped once the tick is over
+        long last = Math.min(nowTick - 1, sweptTick + wheel.length);
+        for (long tick = sweptTick + 1; tick <= last; tick++) sweepSlot(slotOf(tick), now);
+        sweptTick = nowTick - 1;
+        // we only issue UUIDs: the other jtis are too few to be worth filing
+        others.values().removeIf(until -> until.toEpochMilli() <= now);
+    }
+
+    /**
+     * Drops the expired revocations of a wheel slot.
+     * @param slot slot index
+     * @param now current time in epoch milliseconds
+     */
+    private void sweepSlot(int slot, long now) {
+        long stamp = lock.writeLock();
+        try {
+            long[] ids = wheel[slot];
+            int used = wheelSizes[slot];
+            wheel[slot] = NO_IDS;
+            wheelSizes[slot] = 0;
+            for (int i = 0; i < used; i += 2) {
+                long hi = ids[i], lo = ids[i + 1];
+                long expiry = table.get(hi, lo);
+                if (expiry == 0) continue;
+                if (expiry <= now) table.remove(hi, lo);
+                // due in a later round: file it again; revoked again with another expiry: already filed there
+                else if (slotOf(tickOf(expiry)) == slot) file(slot, hi, lo);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Files an id in a wheel slot. Must be called with the write lock held.
+     * @param slot slot index
+     * @param hi high half of the id
+     * @param lo low half of the id
+     */
+    private void file(int slot, long hi, long lo) {
+        long[] ids = wheel[slot];
+        int used = wheelSizes[slot];
+        if (used == ids.length) wheel[slot] = ids = Arrays.copyOf(ids, Math.max(8, used * 2));
+        ids[used] = hi;
+        ids[used + 1] = lo;
+        wheelSizes[slot] = used + 2;
+    }
+
+    /**
+     * Computes the tick during which an instant falls.
+     * @param epochMillis instant in epoch milliseconds
+     * @return tick number
+     */
+    private long tickOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, tickMillis);
+    }
+
+    /**
+     * Computes the wheel slot of a tick.
+     * @param tick tick number
+     * @return slot index
+     */
+    private int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) wheel.length);
+    }
+
+    /**
+     * Starts sweeping expired revocations once per tick on a background daemon thread.
+     */
+    public void startSweeper() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "token-revocation-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::sweep, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks whether a jti has the layout of the canonical UUID form produced by {@link UUID#toString()}: 36
+     * characters with dashes at 8, 13, 18 and 23. Its digits must then be lowercase hexadecimal: other forms are
+     * rejected rather than normalized, so that two distinct jtis never share an entry.
+     * @param jti token id
+     * @return true if the jti has the layout of a UUID
+     */
+    private static boolean hasUuidLayout(String jti) {
+        return jti != null && jti.length() == 36
+            && jti.charAt(8) == '-' && jti.charAt(13) == '-' && jti.charAt(18) == '-' && jti.charAt(23) == '-';
+    }
+
+    /**
+     * Parses lowercase hexadecimal digits.
+     * @param s string
+     * @param from index of the first digit
+     * @param to index after the last digit (at most 15 digits)
+     * @return the value, or a negative number if a character is not a lowercase hexadecimal digit
+     */
+    private static long hex(String s, int from, int to) {
+        // table lookups rather than range checks: random hex digits would defeat branch prediction
+        long value = 0;
+        int invalid = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            int v = c < 128 ? HEX[c] : -1;
+            invalid |= v;
+            value = value << 4 | (v & 0xf);
+        }
+        return invalid < 0 ? -1 : value;
+    }
 }
@@ -1,6 +1,7 @@
 package ch.heig.motd.repository;
 
 import java.time.Instant;
+import java.util.function.BiConsumer;
 
 /**
  * Interface for a token store to manage revoked tokens.
@@ -19,4 +20,13 @@ public interface TokenStore {
      * @return true if the token is revoked, false otherwise
      */
     boolean isRevoked(String jti);
+
+    /**
+     * Visits the active (not yet expired) revocations, at least those recorded since the given instant.
+     * Stores shared between instances implement it so that local accelerators can catch up with revocations made
+     * elsewhere.
+     * @param revokedSince only revocations recorded at or after this instant are required, or null for all of them
+     * @param action called with the jti and the end of the revocation of each visited token
+     */
+    void forEachActive(Instant revokedSince, BiConsumer<String, Instant> action);
 }
@@ -0,0 +1,17 @@
+package ch.heig.motd.repository;
+
+/**
+ * Thrown when a post is written for an author that does not exist, i.e. when the
+ * {@code posts.author_id} foreign key rejects the row.
+ */
+public class UnknownAuthorException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     * @param authorId id of the missing author
+     */
+    public UnknownAuthorException(long authorId) {
+        super("unknown author " + authorId);
+    }
+}
@@ -30,6 +30,13 @@ public interface UserRepository {
      */
     User save(String username, String passwordHash);
 
+    /**
+     * Replaces the password hash of a user.
+     * @param id user id
+     * @param passwordHash new hashed password
+     */
+    void updatePasswordHash(long id, String passwordHash);
+
     /**
      * Deletes a user by its id.
      * @param id user id
@@ -44,6 +44,8 @@ public interface AuthService {
      * This allows callers (middleware/controllers) to access claims without re-verifying the token.
      * @param token the JWT token to validate
      * @return an Optional containing the DecodedJWT if the token is valid and not revoked, or empty if not
+     * @throws ch.heig.motd.concurrent.OverloadedException if the token store is saturated
+     * @throws RuntimeException if the token store cannot be queried
      */
     Optional<DecodedJWT> validateAndGetClaims(String token);
 
@@ -75,16 +75,12 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public Optional<DecodedJWT> validateAndGetClaims(String token) {
-        try {
-            DecodedJWT claims = jwtProvider.verifyToken(token);
-            if (claims == null) { log.warn("Invalid token"); return Optional.empty(); }
-            String jti = claims.getId();
-            if (isTokenRevoked(jti)) { log.warn("Token is revoked: {}", jti); return Optional.empty(); }
-            return Optional.of(claims);
-        } catch (Exception e) {
-            log.error("Error validating token", e);
-            return Optional.empty();
-        }
+        DecodedJWT claims = jwtProvider.verifyToken(token);
+        if (claims == null) { log.warn("Invalid token"); return Optional.empty(); }
+        String jti = claims.getId();
+        // a token store failure is not an invalid token: let it propagate so that it is not answered with 401
+        if (isTokenRevoked(jti)) { log.warn("Token is revoked: {}", jti); return Optional.empty(); }
+        return Optional.of(claims);
     }
 
     @Override
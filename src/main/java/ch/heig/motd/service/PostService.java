@@ -1,10 +1,15 @@
 package ch.heig.motd.service;
 
+import ch.heig.motd.model.NewPost;
 import ch.heig.motd.model.Post;
+import ch.heig.motd.model.PostCursor;
+import ch.heig.motd.model.Precondition;
+import ch.heig.motd.model.WriteResult;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Service interface for Post entity.
@@ -18,6 +23,14 @@ public interface PostService {
      */
     Post create(long authorId, String content);
 
+    /**
+     * Creates several posts at once, all or none of them.
+     * @param authorId author id
+     * @param posts posts to create
+     * @return the created posts, in the order given
+     */
+    List<Post> createAll(long authorId, List<NewPost> posts);
+
     /**
      * Finds a post by its id.
      * @param id post id
@@ -31,6 +44,20 @@ public interface PostService {
      */
     List<Post> findAll();
 
+    /**
+     * Passes every post, newest first, to the given action as it is read, without holding them all in memory.
+     * @param action action run on each post
+     */
+    void streamAll(Consumer<Post> action);
+
+    /**
+     * Finds one page of posts, newest first.
+     * @param after cursor of the last post of the previous page, or null for the first page
+     * @param limit maximum number of posts to return
+     * @return the posts of the page
+     */
+    List<Post> findPage(PostCursor after, int limit);
+
     /**
      * Finds posts by display date.
      * @param date display date
@@ -39,16 +66,21 @@ public interface PostService {
     List<Post> findByDate(LocalDate date);
 
     /**
-     * Deletes a post by its id.
+     * Deletes a post of the given author, if it meets the given precondition.
      * @param id post id
+     * @param authorId id of the user deleting the post
+     * @param precondition condition the post must meet
+     * @return the result, holding the deleted post if it was deleted
      */
-    void delete(long id);
+    WriteResult delete(long id, long authorId, Precondition precondition);
 
     /**
-     * Updates the content of a post.
+     * Updates the content of a post of the given author, if it meets the given precondition.
      * @param id post id
+     * @param authorId id of the user updating the post
      * @param newContent new content
-     * @return the updated post
+     * @param precondition condition the post must meet
+     * @return the result, holding the updated post if it was updated
      */
-    Post updateContent(long id, String newContent);
+    WriteResult updateContent(long id, long authorId, String newContent, Precondition precondition);
 }
@@ -1,9 +1,12 @@
 package ch.heig.motd.service;
 
+import ch.heig.motd.model.NewPost;
 import ch.heig.motd.model.Post;
-import ch.heig.motd.model.User;
+import ch.heig.motd.model.PostCursor;
+import ch.heig.motd.model.Precondition;
+import ch.heig.motd.model.WriteResult;
 import ch.heig.motd.repository.PostRepository;
-import ch.heig.motd.repository.UserRepository;
+import ch.heig.motd.repository.UnknownAuthorException;
 import io.javalin.http.NotFoundResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Implementation of PostService.
@@ -26,30 +30,33 @@ public class PostServiceImpl implements PostService {
      */
     private final PostRepository postRepo;
 
-    /**
-     * User repository for data access.
-     */
-    private final UserRepository userRepo;
-
     /**
      * Constructor.
      * @param postRepo post repository
-     * @param userRepo user repository
      */
-    public PostServiceImpl(PostRepository postRepo, UserRepository userRepo) {
+    public PostServiceImpl(PostRepository postRepo) {
         this.postRepo = postRepo;
-        this.userRepo = userRepo;
     }
 
     @Override
     public Post create(long authorId, String content) {
         log.info("Create post by user {}", authorId);
-        // Vérifier que l'utilisateur existe
-        Optional<User> userOpt = userRepo.findById(authorId);
-        if (userOpt.isEmpty()) {
+        // La clé étrangère posts.author_id vérifie que l'utilisateur existe
+        try {
+            return postRepo.save(authorId, content);
+        } catch (UnknownAuthorException e) {
+            throw new NotFoundResponse("user not found");
+        }
+    }
+
+    @Override
+    public List<Post> createAll(long authorId, List<NewPost> posts) {
+        log.info("Create {} posts by user {}", posts.size(), authorId);
+        try {
+            return postRepo.saveAll(authorId, posts);
+        } catch (UnknownAuthorException e) {
             throw new NotFoundResponse("user not found");
         }
-        return postRepo.save(authorId, content);
     }
 
     @Override
@@ -58,18 +65,24 @@ public class PostServiceImpl implements PostService {
     @Override
     public List<Post> findAll() { return postRepo.findAll(); }
 
+    @Override
+    public void streamAll(Consumer<Post> action) { postRepo.streamAll(action); }
+
+    @Override
+    public List<Post> findPage(PostCursor after, int limit) { return postRepo.findPage(after, limit); }
+
     @Override
     public List<Post> findByDate(LocalDate date) { return postRepo.findByDisplayDate(date); }
 
     @Override
-    public void delete(long id) {
+    public WriteResult delete(long id, long authorId, Precondition precondition) {
         log.info("Delete post {}", id);
-        postRepo.delete(id);
+        return postRepo.delete(id, authorId, precondition);
     }
 
     @Override
-    public Post updateContent(long id, String newContent) {
+    public WriteResult updateContent(long id, long authorId, String newContent, Precondition precondition) {
         log.info("Update post {} content", id);
-        return postRepo.updateContent(id, newContent);
+        return postRepo.updateContent(id, authorId, newContent, precondition);
     }
 }
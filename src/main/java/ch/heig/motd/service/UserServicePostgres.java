@@ -1,8 +1,15 @@
 package ch.heig.motd.service;
 
+import ch.heig.motd.auth.BCryptPasswordHasher;
+import ch.heig.motd.auth.DelegatingPasswordHasher;
+import ch.heig.motd.auth.PasswordHasher;
+import ch.heig.motd.auth.Pbkdf2PasswordHasher;
+import ch.heig.motd.concurrent.BoundedExecutor;
 import ch.heig.motd.model.User;
 import ch.heig.motd.repository.UserRepository;
-import org.mindrot.jbcrypt.BCrypt;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,6 +17,13 @@ import java.util.Optional;
 
 /**
  * Implementation of the UserService interface using PostgreSQL.
+ * <p>
+ * Password hashing and verification are deliberately slow, so they run on a dedicated bounded pool rather than on
+ * the request thread: when that pool is saturated, registrations and logins are rejected with an
+ * {@link ch.heig.motd.concurrent.OverloadedException} while the other endpoints keep being served.
+ * <p>
+ * Stored hashes produced with an outdated algorithm or cost are recomputed with the current settings after a
+ * successful login, so that tuning the hasher never forces a password reset.
  */
 public class UserServicePostgres implements UserService {
     /**
@@ -23,11 +37,70 @@ public class UserServicePostgres implements UserService {
     private final UserRepository repo;
 
     /**
-     * Constructor.
+     * Pool running the password hashing and verification.
+     */
+    private final BoundedExecutor passwordExecutor;
+
+    /**
+     * Password hashing algorithm.
+     */
+    private final PasswordHasher hasher;
+
+    /**
+     * Latency of password hashing, as seen by the caller (queueing included).
+     */
+    private final Timer hashTimer;
+
+    /**
+     * Latency of password verification, as seen by the caller (queueing included).
+     */
+    private final Timer verifyTimer;
+
+    /**
+     * Constructor, using a pool with one worker per core and BCrypt with the default cost.
      * @param repo user repository
      */
     public UserServicePostgres(UserRepository repo) {
+        this(repo, defaultPasswordExecutor(),
+            DelegatingPasswordHasher.of("bcrypt", BCryptPasswordHasher.DEFAULT_COST, Pbkdf2PasswordHasher.DEFAULT_ITERATIONS), Metrics.globalRegistry);
+    }
+
+    /**
+     * Constructor.
+     * @param repo user repository
+     * @param passwordExecutor pool running the password hashing and verification
+     * @param hasher password hashing algorithm
+     * @param registry meter registry for the latency histograms
+     */
+    public UserServicePostgres(UserRepository repo, BoundedExecutor passwordExecutor, PasswordHasher hasher, MeterRegistry registry) {
         this.repo = repo;
+        this.passwordExecutor = passwordExecutor;
+        this.hasher = hasher;
+        this.hashTimer = passwordTimer("hash", registry);
+        this.verifyTimer = passwordTimer("verify", registry);
+    }
+
+    /**
+     * Creates the default password pool: one worker per core and a queue of four tasks per worker.
+     * @return the pool
+     */
+    private static BoundedExecutor defaultPasswordExecutor() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new BoundedExecutor("password", cores, cores * 4);
+    }
+
+    /**
+     * Creates the latency timer of a password operation.
+     * @param operation operation name
+     * @param registry meter registry
+     * @return the timer
+     */
+    private static Timer passwordTimer(String operation, MeterRegistry registry) {
+        return Timer.builder("password.operations")
+            .description("Latency of password operations, queueing included")
+            .tag("op", operation)
+            .publishPercentileHistogram()
+            .register(registry);
     }
 
     @Override
@@ -37,7 +110,7 @@ public class UserServicePostgres implements UserService {
             log.warn("Username already exists: {}", username);
             throw new IllegalArgumentException("username.exists");
         }
-        String hash = BCrypt.hashpw(password, BCrypt.gensalt());
+        String hash = hashTimer.record(() -> passwordExecutor.call(() -> hasher.hash(password)));
         return repo.save(username, hash);
     }
 
@@ -53,12 +126,26 @@ public class UserServicePostgres implements UserService {
 
     @Override
     public boolean verifyPassword(User user, String password) {
-        try {
-            return BCrypt.checkpw(password, user.getPasswordHash());
-        } catch (Exception e) {
-            log.error("Error verifying password for user {}", user.getUsername(), e);
-            return false;
+        String upgraded = verifyTimer.record(() -> passwordExecutor.call(() -> {
+            try {
+                if (!hasher.verify(password, user.getPasswordHash())) return null;
+                return hasher.needsRehash(user.getPasswordHash()) ? hasher.hash(password) : user.getPasswordHash();
+            } catch (Exception e) {
+                log.error("Error verifying password for user {}", user.getUsername(), e);
+                return null;
+            }
+        }));
+        if (upgraded == null) return false;
+        if (!upgraded.equals(user.getPasswordHash())) {
+            try {
+                repo.updatePasswordHash(user.getId(), upgraded);
+                log.info("Upgraded password hash of user {}", user.getUsername());
+            } catch (RuntimeException e) {
+                // the login itself succeeded; the upgrade is retried at the next one
+                log.warn("Could not upgrade password hash of user {}", user.getUsername(), e);
+            }
         }
+        return true;
     }
 
     @Override
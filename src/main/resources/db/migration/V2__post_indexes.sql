@@ -0,0 +1,10 @@
+-- Flyway migration V2: indexes matching the post queries
+
+-- findByDisplayDate: WHERE display_at = ? ORDER BY created_at DESC
+CREATE INDEX IF NOT EXISTS posts_display_at_created_at_idx ON posts (display_at, created_at DESC);
+
+-- findPage / findAll: ORDER BY created_at DESC, id DESC, keyset on (created_at, id) < (?, ?)
+CREATE INDEX IF NOT EXISTS posts_created_at_id_idx ON posts (created_at DESC, id DESC);
+
+-- author_id foreign key: ON DELETE CASCADE from users looks posts up by author
+CREATE INDEX IF NOT EXISTS posts_author_id_idx ON posts (author_id);
@@ -0,0 +1,4 @@
+-- Flyway migration V3: index for the periodic purge of expired token revocations
+
+-- PostgresTokenStore.purgeExpired: WHERE expires_at <= now()
+CREATE INDEX IF NOT EXISTS revoked_tokens_expires_at_idx ON revoked_tokens (expires_at);
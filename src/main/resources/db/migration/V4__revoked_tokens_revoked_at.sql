@@ -0,0 +1,5 @@
+-- Flyway migration V4: record when each token was revoked
+
+-- BloomFilterTokenStore catches up with revocations made by other instances: WHERE revoked_at >= ?
+ALTER TABLE revoked_tokens ADD COLUMN IF NOT EXISTS revoked_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+CREATE INDEX IF NOT EXISTS revoked_tokens_revoked_at_idx ON revoked_tokens (revoked_at);
@@ -0,0 +1,6 @@
+-- Flyway migration V5: version and modification time of each post
+
+-- conditional writes compare them in the UPDATE/DELETE itself: WHERE id = ? AND version = ?
+-- (existing rows get the migration time, a conservative Last-Modified)
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
@@ -1,10 +1,14 @@
 package ch.heig.motd;
 
 import ch.heig.motd.auth.JwtProvider;
+import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class JwtProviderTest {
@@ -20,5 +24,34 @@ public class JwtProviderTest {
         assertEquals("alice", dec.getClaim("username").asString());
         assertEquals("jti-123", dec.getId());
     }
-}
 
+    @Test
+    public void verifyToken_sameToken_servedFromCache() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtProvider p = new JwtProvider(Algorithm.HMAC256("test-secret"), registry);
+        String token = p.createToken(42L, "alice", "jti-123");
+
+        DecodedJWT first = p.verifyToken(token);
+        DecodedJWT second = p.verifyToken(token);
+
+        assertSame(first, second);
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "jwt.verified").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    public void verifyToken_failures_countedByReason() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtProvider p = new JwtProvider(Algorithm.HMAC256("test-secret"), registry);
+        String otherSecret = new JwtProvider(Algorithm.HMAC256("other-secret"), registry).createToken(1L, "bob", "jti-1");
+        String expired = JWT.create().withSubject("1").withExpiresAt(Instant.now().minusSeconds(60)).sign(Algorithm.HMAC256("test-secret"));
+
+        assertNull(p.verifyToken(otherSecret));
+        assertNull(p.verifyToken(expired));
+        assertNull(p.verifyToken("not-a-jwt"));
+        assertNull(p.verifyToken("not-a-jwt"));
+
+        assertEquals(1.0, registry.get("jwt.verification.failures").tag("reason", "signature").counter().count());
+        assertEquals(1.0, registry.get("jwt.verification.failures").tag("reason", "expired").counter().count());
+        assertEquals(2.0, registry.get("jwt.verification.failures").tag("reason", "malformed").counter().count());
+    }
+}
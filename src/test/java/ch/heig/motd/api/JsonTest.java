@@ -0,0 +1,39 @@
+package ch.heig.motd.api;
+
+import ch.heig.motd.dto.Credentials;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.javalin.http.Context;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class JsonTest {
+    private static final ObjectReader CREDENTIALS_READER = Json.reader(Credentials.class);
+
+    @Test
+    public void errorBody_encodedOnceAndReused() {
+        byte[] body = Json.errorBody(ApiConstants.Errors.NOT_FOUND);
+
+        assertEquals("{\"error\":\"not.found\"}", new String(body, StandardCharsets.UTF_8));
+        assertSame(body, Json.errorBody(ApiConstants.Errors.NOT_FOUND));
+    }
+
+    @Test
+    public void read_emptyBody_returnsNull() throws Exception {
+        Context ctx = mock(Context.class);
+        when(ctx.bodyAsBytes()).thenReturn(new byte[0]);
+
+        assertNull(Json.read(ctx, CREDENTIALS_READER));
+    }
+
+    @Test
+    public void read_decodesTheBody() throws Exception {
+        Context ctx = mock(Context.class);
+        when(ctx.bodyAsBytes()).thenReturn("{\"username\":\"bob\",\"password\":\"x\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(new Credentials("bob", "x"), Json.read(ctx, CREDENTIALS_READER));
+    }
+}
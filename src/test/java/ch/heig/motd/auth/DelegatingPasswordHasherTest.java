@@ -0,0 +1,42 @@
+package ch.heig.motd.auth;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DelegatingPasswordHasherTest {
+    @Test
+    public void pbkdf2_hashAndVerify() {
+        Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000);
+
+        String hash = hasher.hash("secret");
+
+        assertTrue(hash.startsWith("$pbkdf2-sha256$1000$"));
+        assertTrue(hasher.verify("secret", hash));
+        assertFalse(hasher.verify("bad", hash));
+        assertNotEquals(hash, hasher.hash("secret"));
+    }
+
+    @Test
+    public void verify_dispatchesOnPrefix() {
+        DelegatingPasswordHasher hasher = DelegatingPasswordHasher.of("bcrypt", 4, 1000);
+
+        assertTrue(hasher.verify("secret", new Pbkdf2PasswordHasher(1000).hash("secret")));
+        assertTrue(hasher.verify("secret", new BCryptPasswordHasher(4).hash("secret")));
+        assertThrows(IllegalArgumentException.class, () -> hasher.verify("secret", "plain"));
+    }
+
+    @Test
+    public void needsRehash_otherAlgorithmOrCost() {
+        DelegatingPasswordHasher hasher = DelegatingPasswordHasher.of("bcrypt", 5, 1000);
+
+        assertFalse(hasher.needsRehash(new BCryptPasswordHasher(5).hash("secret")));
+        assertTrue(hasher.needsRehash(new BCryptPasswordHasher(4).hash("secret")));
+        assertTrue(hasher.needsRehash(new Pbkdf2PasswordHasher(1000).hash("secret")));
+    }
+
+    @Test
+    public void of_unknownAlgorithm_throws() {
+        assertThrows(IllegalArgumentException.class, () -> DelegatingPasswordHasher.of("md5", 10, 1000));
+    }
+}
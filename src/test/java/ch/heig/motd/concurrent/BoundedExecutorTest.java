@@ -0,0 +1,45 @@
+package ch.heig.motd.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedExecutorTest {
+    @Test
+    public void call_returnsResultFromWorker() {
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1);
+
+        String thread = executor.call(() -> Thread.currentThread().getName());
+
+        assertEquals("test-1", thread);
+    }
+
+    @Test
+    public void call_propagatesRuntimeException() {
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> executor.call(() -> { throw new IllegalArgumentException("boom"); }));
+    }
+
+    @Test
+    public void call_saturated_throwsOverloaded() throws Exception {
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> busy = CompletableFuture.supplyAsync(() -> executor.call(() -> { running.countDown(); release.await(); return null; }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> queued = CompletableFuture.supplyAsync(() -> executor.call(() -> null));
+        while (executor.queued() == 0) Thread.onSpinWait();
+
+        OverloadedException e = assertThrows(OverloadedException.class, () -> executor.call(() -> null));
+        assertEquals(1, e.getRetryAfterSeconds());
+
+        release.countDown();
+        busy.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,53 @@
+package ch.heig.motd.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkheadTest {
+    @Test
+    public void acquire_withinLimit_succeeds() {
+        Bulkhead bulkhead = new Bulkhead("db", 2, 0, Duration.ofMillis(10));
+
+        bulkhead.acquire();
+        bulkhead.acquire();
+        bulkhead.release();
+        bulkhead.acquire();
+    }
+
+    @Test
+    public void acquire_queueFull_throwsOverloaded() {
+        Bulkhead bulkhead = new Bulkhead("db", 1, 0, Duration.ofSeconds(5));
+        bulkhead.acquire();
+
+        OverloadedException e = assertThrows(OverloadedException.class, bulkhead::acquire);
+        assertEquals(5, e.getRetryAfterSeconds());
+    }
+
+    @Test
+    public void acquire_timesOut_throwsOverloaded() {
+        Bulkhead bulkhead = new Bulkhead("db", 1, 10, Duration.ofMillis(50));
+        bulkhead.acquire();
+
+        assertThrows(OverloadedException.class, bulkhead::acquire);
+        assertEquals(0, bulkhead.queued());
+    }
+
+    @Test
+    public void acquire_waitsForRelease() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead("db", 1, 1, Duration.ofSeconds(5));
+        bulkhead.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> { bulkhead.acquire(); acquired.countDown(); });
+        waiter.start();
+
+        assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        bulkhead.release();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        waiter.join();
+    }
+}
@@ -1,21 +1,28 @@
 package ch.heig.motd.controller;
 
 import ch.heig.motd.api.ApiConstants;
+import ch.heig.motd.api.Json;
 import ch.heig.motd.dto.Credentials;
 import ch.heig.motd.service.AuthService;
 import ch.heig.motd.service.UserService;
 import ch.heig.motd.auth.JwtProviderInterface;
 import ch.heig.motd.api.AuthMiddleware;
+import ch.heig.motd.concurrent.OverloadedException;
+import ch.heig.motd.repository.TokenStore;
+import ch.heig.motd.service.AuthServiceImpl;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.javalin.http.Context;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.time.Instant;
 import java.util.Date;
 import java.util.Map;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 public class AuthControllerTest {
@@ -33,48 +40,67 @@ public class AuthControllerTest {
         when(ctx.status(anyInt())).thenReturn(ctx);
     }
 
+    /**
+     * Encodes a request body.
+     */
+    private static byte[] json(Object body) {
+        try {
+            return new ObjectMapper().writeValueAsBytes(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes the JSON body written with {@code ctx.result(byte[])}.
+     */
+    private Map<?, ?> jsonBody() throws Exception {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(ctx).result(captor.capture());
+        return new ObjectMapper().readValue(captor.getValue(), Map.class);
+    }
+
     @Test
     public void register_missingBody_returns400() {
-        when(ctx.body()).thenReturn("");
+        when(ctx.bodyAsBytes()).thenReturn(new byte[0]);
 
         controller.register(ctx);
 
         verify(ctx).status(400);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.MISSING_USERNAME_OR_PASSWORD));
     }
 
     @Test
     public void register_existingUser_returns409() {
-        when(ctx.body()).thenReturn("{\"username\": \"bob\", \"password\": \"x\"}");
-        when(ctx.bodyAsClass(Credentials.class)).thenReturn(new Credentials("bob", "x"));
+        when(ctx.bodyAsBytes()).thenReturn(json(new Credentials("bob", "x")));
         when(userService.register("bob", "x")).thenThrow(new IllegalArgumentException("username.exists"));
 
         controller.register(ctx);
 
         verify(ctx).status(409);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.USERNAME_EXISTS)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.USERNAME_EXISTS));
     }
 
     @Test
     public void login_invalidCredentials_returns401() {
-        when(ctx.bodyAsClass(Map.class)).thenReturn(Map.of(ApiConstants.Keys.USERNAME, "alice", ApiConstants.Keys.PASSWORD, "bad"));
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.USERNAME, "alice", ApiConstants.Keys.PASSWORD, "bad")));
         when(authService.login("alice", "bad")).thenReturn(Optional.empty());
 
         controller.login(ctx);
 
         verify(ctx).status(401);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.INVALID_CREDENTIALS)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INVALID_CREDENTIALS));
     }
 
     @Test
-    public void login_valid_returns200() {
-        when(ctx.bodyAsClass(Map.class)).thenReturn(Map.of(ApiConstants.Keys.USERNAME, "alice", ApiConstants.Keys.PASSWORD, "good"));
+    public void login_valid_returns200() throws Exception {
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.USERNAME, "alice", ApiConstants.Keys.PASSWORD, "good")));
         when(authService.login("alice", "good")).thenReturn(Optional.of("tok-1"));
 
         controller.login(ctx);
 
         verify(ctx).status(200);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.TOKEN).equals("tok-1")));
+        assertEquals("tok-1", jsonBody().get(ApiConstants.Keys.TOKEN));
     }
 
     @Test
@@ -85,7 +111,7 @@ public class AuthControllerTest {
         controller.logout(ctx);
 
         verify(ctx).status(401);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.MISSING_TOKEN)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.MISSING_TOKEN));
     }
 
     @Test
@@ -96,11 +122,11 @@ public class AuthControllerTest {
         controller.logout(ctx);
 
         verify(ctx).status(401);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.MISSING_TOKEN)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.MISSING_TOKEN));
     }
 
     @Test
-    public void logout_validToken_revokes_and_returns200() {
+    public void logout_validToken_revokes_and_returns200() throws Exception {
         DecodedJWT dec = mock(DecodedJWT.class);
         when(dec.getId()).thenReturn("jti-123");
         when(dec.getExpiresAt()).thenReturn(Date.from(Instant.now().plusSeconds(3600)));
@@ -112,7 +138,7 @@ public class AuthControllerTest {
 
         verify(authService).logout(eq("jti-123"), any());
         verify(ctx).status(200);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get("message").equals("logged.out")));
+        assertEquals("logged.out", jsonBody().get("message"));
     }
 
     @Test
@@ -125,7 +151,7 @@ public class AuthControllerTest {
         authMiddleware.requireAuth(ctx);
 
         verify(ctx).status(401);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.MISSING_TOKEN)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.MISSING_TOKEN));
     }
 
     @Test
@@ -138,7 +164,8 @@ public class AuthControllerTest {
         authMiddleware.requireAuth(ctx);
 
         verify(ctx).status(401);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.INVALID_TOKEN)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INVALID_TOKEN));
+        verify(ctx).skipRemainingHandlers();
     }
 
     @Test
@@ -157,4 +184,52 @@ public class AuthControllerTest {
         verify(userService).delete(123L);
         verify(ctx).status(204);
     }
+
+    @Test
+    public void authenticate_get_withoutToken_returns401() {
+        when(ctx.method()).thenReturn(io.javalin.http.HandlerType.GET);
+
+        new AuthMiddleware(authService).authenticate(ctx);
+
+        verify(ctx).status(401);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.MISSING_TOKEN));
+        verify(ctx).skipRemainingHandlers();
+    }
+
+    /**
+     * Middleware backed by a real AuthServiceImpl whose token store fails on lookup.
+     */
+    private AuthMiddleware middlewareWithFailingStore(RuntimeException failure) {
+        JwtProviderInterface jwtProvider = mock(JwtProviderInterface.class);
+        DecodedJWT jwt = mock(DecodedJWT.class);
+        when(jwt.getId()).thenReturn("jti-1");
+        when(jwtProvider.verifyToken("tok")).thenReturn(jwt);
+        TokenStore tokenStore = mock(TokenStore.class);
+        when(tokenStore.isRevoked("jti-1")).thenThrow(failure);
+        when(ctx.header(ApiConstants.Headers.AUTHORIZATION)).thenReturn(ApiConstants.Headers.BEARER_PREFIX + "tok");
+        when(ctx.method()).thenReturn(io.javalin.http.HandlerType.DELETE);
+        return new AuthMiddleware(new AuthServiceImpl(userService, tokenStore, jwtProvider));
+    }
+
+    @Test
+    public void requireAuth_tokenStoreFails_returns503Not401() {
+        middlewareWithFailingStore(new RuntimeException("connection refused")).requireAuth(ctx);
+
+        verify(ctx).status(503);
+        verify(ctx, never()).status(401);
+        verify(ctx).header(eq(ApiConstants.Headers.RETRY_AFTER), anyString());
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.SERVICE_UNAVAILABLE));
+        verify(ctx, never()).attribute(eq("uid"), any());
+        verify(ctx).skipRemainingHandlers();
+    }
+
+    @Test
+    public void requireAuth_tokenStoreOverloaded_returns503WithRetryAfter() {
+        middlewareWithFailingStore(new OverloadedException("db is overloaded", 2)).requireAuth(ctx);
+
+        verify(ctx).status(503);
+        verify(ctx).header(ApiConstants.Headers.RETRY_AFTER, "2");
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.SERVICE_UNAVAILABLE));
+        verify(ctx).skipRemainingHandlers();
+    }
 }
@@ -0,0 +1,248 @@
+package ch.heig.motd.controller;
+
+import ch.heig.motd.model.Post;
+import ch.heig.motd.service.PostService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DailySnapshotTest {
+    private static final ZoneId ZONE = ZoneOffset.UTC;
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 10);
+    private static final LocalDate TOMORROW = TODAY.plusDays(1);
+
+    private PostService postService;
+
+    @BeforeEach
+    public void setup() {
+        postService = mock(PostService.class);
+        when(postService.findByDate(any())).thenReturn(List.of());
+    }
+
+    private static Clock at(String time) {
+        return Clock.fixed(Instant.parse(time), ZONE);
+    }
+
+    private static Post post(long id, String createdAt, LocalDate displayAt) {
+        return new Post(id, 1L, "post " + id, Instant.parse(createdAt), displayAt);
+    }
+
+    private static List<?> ids(CachedBody body) throws Exception {
+        List<?> posts = new ObjectMapper().readValue(body.json(), List.class);
+        return posts.stream().map(p -> ((Map<?, ?>) p).get("id")).toList();
+    }
+
+    @Test
+    public void get_beforeRefresh_returnsNull() {
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+
+        assertNull(snapshot.get(TODAY));
+        verifyNoInteractions(postService);
+    }
+
+    @Test
+    public void refresh_loadsTodayAndTomorrow() throws Exception {
+        when(postService.findByDate(TODAY)).thenReturn(List.of(post(1, "2024-05-09T08:00:00Z", TODAY)));
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+
+        snapshot.refresh();
+
+        assertEquals(List.of(1), ids(snapshot.get(TODAY)));
+        assertEquals(List.of(), ids(snapshot.get(TOMORROW)));
+        assertNull(snapshot.get(TODAY.plusDays(2)));
+        assertNull(snapshot.get(TODAY.minusDays(1)));
+    }
+
+    @Test
+    public void refresh_shortlyBeforeMidnight_prewarmsTheDayAfter() {
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T23:59:30Z"));
+
+        snapshot.refresh();
+
+        assertNotNull(snapshot.get(TODAY.plusDays(2)));
+        verify(postService).findByDate(TODAY.plusDays(2));
+    }
+
+    @Test
+    public void rollover_afterPrewarm_dropsYesterdayWithoutQuerying() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-05-10T23:59:30Z"));
+        DailySnapshot snapshot = new DailySnapshot(postService, clock);
+        snapshot.refresh();
+        clearInvocations(postService);
+
+        clock.advance(Duration.ofSeconds(30));
+        snapshot.rollover();
+
+        assertNull(snapshot.get(TODAY));
+        assertNotNull(snapshot.get(TOMORROW));
+        assertNotNull(snapshot.get(TOMORROW.plusDays(1)));
+        verifyNoInteractions(postService);
+    }
+
+    @Test
+    public void put_patchesTomorrowNewestFirst() throws Exception {
+        when(postService.findByDate(TOMORROW)).thenReturn(List.of(post(1, "2024-05-10T08:00:00Z", TOMORROW)));
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+        snapshot.refresh();
+        clearInvocations(postService);
+
+        snapshot.put(post(2, "2024-05-10T09:00:00Z", TOMORROW));
+
+        assertEquals(List.of(2, 1), ids(snapshot.get(TOMORROW)));
+        verifyNoInteractions(postService);
+    }
+
+    @Test
+    public void putAll_patchesEachDayOnce() throws Exception {
+        when(postService.findByDate(TOMORROW)).thenReturn(List.of(post(1, "2024-05-10T08:00:00Z", TOMORROW)));
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+        snapshot.refresh();
+        CachedBody today = snapshot.get(TODAY);
+
+        snapshot.putAll(List.of(
+            post(2, "2024-05-10T09:00:00Z", TOMORROW),
+            post(3, "2024-05-10T10:00:00Z", TOMORROW),
+            post(4, "2024-05-10T10:00:00Z", TODAY.plusDays(7))));
+
+        assertEquals(List.of(3, 2, 1), ids(snapshot.get(TOMORROW)));
+        assertSame(today, snapshot.get(TODAY));
+        assertNull(snapshot.get(TODAY.plusDays(7)));
+    }
+
+    @Test
+    public void put_replacesAnEditedPost() throws Exception {
+        when(postService.findByDate(TODAY)).thenReturn(List.of(post(1, "2024-05-09T08:00:00Z", TODAY)));
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+        snapshot.refresh();
+
+        Post edited = post(1, "2024-05-09T08:00:00Z", TODAY);
+        edited.setContent("edited");
+        snapshot.put(edited);
+
+        List<?> posts = new ObjectMapper().readValue(snapshot.get(TODAY).json(), List.class);
+        assertEquals(1, posts.size());
+        assertEquals("edited", ((Map<?, ?>) posts.get(0)).get("content"));
+    }
+
+    @Test
+    public void putAll_postsCreatedTogether_areOrderedById() throws Exception {
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+        snapshot.refresh();
+
+        snapshot.putAll(List.of(
+            post(2, "2024-05-10T09:00:00Z", TOMORROW),
+            post(4, "2024-05-10T09:00:00Z", TOMORROW),
+            post(3, "2024-05-10T09:00:00Z", TOMORROW)));
+
+        assertEquals(List.of(4, 3, 2), ids(snapshot.get(TOMORROW)));
+    }
+
+    @Test
+    public void put_olderVersion_keepsTheNewerPost() throws Exception {
+        Instant createdAt = Instant.parse("2024-05-09T08:00:00Z");
+        when(postService.findByDate(TODAY)).thenReturn(List.of(
+            new Post(1, 1L, "second edit", createdAt, TODAY, 3, createdAt.plusSeconds(20))));
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+        snapshot.refresh();
+
+        snapshot.put(new Post(1, 1L, "first edit", createdAt, TODAY, 2, createdAt.plusSeconds(10)));
+
+        List<?> posts = new ObjectMapper().readValue(snapshot.get(TODAY).json(), List.class);
+        assertEquals("second edit", ((Map<?, ?>) posts.get(0)).get("content"));
+    }
+
+    @Test
+    public void remove_dropsThePost() throws Exception {
+        when(postService.findByDate(TODAY)).thenReturn(List.of(
+            post(2, "2024-05-09T09:00:00Z", TODAY), post(1, "2024-05-09T08:00:00Z", TODAY)));
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+        snapshot.refresh();
+
+        snapshot.remove(2, TODAY);
+
+        assertEquals(List.of(1), ids(snapshot.get(TODAY)));
+    }
+
+    @Test
+    public void put_forADayNotHeld_isIgnored() {
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+        snapshot.refresh();
+
+        snapshot.put(post(1, "2024-05-01T08:00:00Z", TODAY.plusDays(7)));
+
+        assertNull(snapshot.get(TODAY.plusDays(7)));
+    }
+
+    @Test
+    public void put_duringRefresh_doesNotWaitAndIsKept() throws Exception {
+        DailySnapshot snapshot = new DailySnapshot(postService, at("2024-05-10T12:00:00Z"));
+        boolean[] patched = new boolean[1];
+        // the query of tomorrow started before the post was written, and does not return it
+        when(postService.findByDate(TOMORROW)).thenAnswer(inv -> {
+            Thread writer = new Thread(() -> snapshot.put(post(2, "2024-05-10T09:00:00Z", TOMORROW)));
+            writer.start();
+            writer.join(5_000);
+            patched[0] = !writer.isAlive();
+            return List.of(post(1, "2024-05-10T08:00:00Z", TOMORROW));
+        });
+
+        snapshot.refresh();
+
+        assertTrue(patched[0], "put blocked on the refresh");
+        assertEquals(List.of(2, 1), ids(snapshot.get(TOMORROW)));
+    }
+
+    @Test
+    public void remove_duringRollover_isReplayedOnTheLoadedDay() throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2024-05-10T12:00:00Z"));
+        DailySnapshot snapshot = new DailySnapshot(postService, clock);
+        snapshot.refresh();
+        clock.advance(Duration.ofDays(1));
+        // the query of the day after saw the post, which is deleted before the rollover swaps the days in
+        when(postService.findByDate(TOMORROW.plusDays(1))).thenAnswer(inv -> {
+            Thread writer = new Thread(() -> snapshot.remove(3, TOMORROW.plusDays(1)));
+            writer.start();
+            writer.join(5_000);
+            return List.of(post(3, "2024-05-11T08:00:00Z", TOMORROW.plusDays(1)));
+        });
+
+        snapshot.rollover();
+
+        assertEquals(List.of(), ids(snapshot.get(TOMORROW.plusDays(1))));
+        assertNotNull(snapshot.get(TOMORROW));
+        assertNull(snapshot.get(TODAY));
+    }
+
+    /**
+     * Clock moved by hand.
+     */
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) { this.now = now; }
+
+        void advance(Duration d) { now = now.plus(d); }
+
+        @Override
+        public ZoneOffset getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+
+        @Override
+        public Instant instant() { return now; }
+    }
+}
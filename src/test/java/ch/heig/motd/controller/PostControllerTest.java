@@ -1,24 +1,52 @@
 package ch.heig.motd.controller;
 
 import ch.heig.motd.api.ApiConstants;
+import ch.heig.motd.api.Json;
+import ch.heig.motd.concurrent.OverloadedException;
+import ch.heig.motd.dto.NewPostDto;
 import ch.heig.motd.dto.PostDto;
+import ch.heig.motd.model.NewPost;
 import ch.heig.motd.model.Post;
+import ch.heig.motd.model.PostCursor;
+import ch.heig.motd.model.Precondition;
+import ch.heig.motd.model.WriteResult;
 import ch.heig.motd.service.AuthService;
 import ch.heig.motd.service.PostService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.javalin.http.Context;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
 import io.javalin.http.NotFoundResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 public class PostControllerTest {
+    private static final int FIRST_PAGE_FETCH = PostController.DEFAULT_PAGE_SIZE + 1;
+
     private PostService postService;
     private AuthService authService;
     private PostController controller;
@@ -28,11 +56,39 @@ public class PostControllerTest {
     public void setup() {
         postService = mock(PostService.class);
         authService = mock(AuthService.class);
-        controller = new PostController(postService, authService);
+        // run cache loads on the calling thread so that cached listings are available synchronously
+        controller = new PostController(postService, authService, Runnable::run);
         ctx = mock(Context.class);
         when(ctx.status(anyInt())).thenReturn(ctx);
     }
 
+    /**
+     * Runs queued executor tasks, including the ones they enqueue.
+     */
+    private static void runAll(List<Runnable> tasks) {
+        for (int i = 0; i < tasks.size(); i++) tasks.get(i).run();
+    }
+
+    /**
+     * Encodes a request body.
+     */
+    private static byte[] json(Object body) {
+        try {
+            return new ObjectMapper().writeValueAsBytes(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes the JSON body written with {@code ctx.result(byte[])}.
+     */
+    private Map<?, ?> jsonBody() throws Exception {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(ctx).result(captor.capture());
+        return new ObjectMapper().readValue(captor.getValue(), Map.class);
+    }
+
     @Test
     public void create_missingAuth_returns401() {
         when(ctx.header(ApiConstants.Headers.AUTHORIZATION)).thenReturn(null);
@@ -40,118 +96,334 @@ public class PostControllerTest {
         controller.create(ctx);
 
         verify(ctx).status(401);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.UNAUTHORIZED)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.UNAUTHORIZED));
     }
 
     @Test
     public void create_emptyContent_returns400() {
         when(ctx.attribute("uid")).thenReturn(1L);
-        when(ctx.bodyAsClass(PostDto.class)).thenReturn(new PostDto(""));
+        when(ctx.bodyAsBytes()).thenReturn(json(new PostDto("")));
 
         controller.create(ctx);
 
         verify(ctx).status(400);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.EMPTY_CONTENT)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.EMPTY_CONTENT));
     }
 
     @Test
     public void create_userNotFound_returns404() {
         when(ctx.attribute("uid")).thenReturn(42L);
-        when(ctx.bodyAsClass(PostDto.class)).thenReturn(new PostDto("hello"));
+        when(ctx.bodyAsBytes()).thenReturn(json(new PostDto("hello")));
         when(postService.create(42L, "hello")).thenThrow(new NotFoundResponse("user not found"));
 
         controller.create(ctx);
 
         verify(ctx).status(404);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals(ApiConstants.Errors.NOT_FOUND)));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.NOT_FOUND));
     }
 
     @Test
-    public void create_validRequest_returns201() {
+    public void create_validRequest_returns201() throws Exception {
         when(ctx.attribute("uid")).thenReturn(3L);
-        when(ctx.bodyAsClass(PostDto.class)).thenReturn(new PostDto("Salut"));
+        when(ctx.bodyAsBytes()).thenReturn(json(new PostDto("Salut")));
         Post created = new Post(1L, 3L, "Salut", Instant.now(), LocalDate.now());
         when(postService.create(3L, "Salut")).thenReturn(created);
 
         controller.create(ctx);
 
         verify(ctx).status(201);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get("id").equals(1L) && ((Map) obj).get("authorId").equals(3L)));
+        Map<?, ?> body = jsonBody();
+        assertEquals(1, body.get("id"));
+        assertEquals(3, body.get("authorId"));
+    }
+
+    @Test
+    public void createBatch_empty_returns400() {
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.bodyAsBytes()).thenReturn(json(new NewPostDto[0]));
+
+        controller.createBatch(ctx);
+
+        verify(ctx).status(400);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INVALID_BATCH));
+        verifyNoInteractions(postService);
+    }
+
+    @Test
+    public void createBatch_todayOrEarlier_returns400() {
+        Clock clock = Clock.fixed(Instant.parse("2024-05-10T12:00:00Z"), ZoneOffset.UTC);
+        controller = new PostController(postService, authService, Runnable::run, clock);
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.bodyAsBytes()).thenReturn(json(new NewPostDto[] {
+            new NewPostDto("a", "2024-05-11"), new NewPostDto("b", "2024-05-10")}));
+
+        controller.createBatch(ctx);
+
+        verify(ctx).status(400);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INVALID_DISPLAY_DATE));
+        verifyNoInteractions(postService);
+    }
+
+    @Test
+    public void createBatch_validRequest_createsAllInOneCall() throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2024-05-10T12:00:00Z"), ZoneOffset.UTC);
+        controller = new PostController(postService, authService, Runnable::run, clock);
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.bodyAsBytes()).thenReturn(json(new NewPostDto[] {
+            new NewPostDto("a", null), new NewPostDto("b", "2024-05-13")}));
+        List<NewPost> expected = List.of(new NewPost("a", null), new NewPost("b", LocalDate.of(2024, 5, 13)));
+        when(postService.createAll(3L, expected)).thenReturn(List.of(
+            new Post(7L, 3L, "a", Instant.now(), LocalDate.of(2024, 5, 11)),
+            new Post(8L, 3L, "b", Instant.now(), LocalDate.of(2024, 5, 13))));
+
+        controller.createBatch(ctx);
+
+        verify(ctx).status(201);
+        List<?> posts = (List<?>) jsonBody().get(ApiConstants.Keys.POSTS);
+        assertEquals(List.of(7, 8), posts.stream().map(p -> ((Map<?, ?>) p).get("id")).toList());
+    }
+
+    /**
+     * Size of the fake response buffer, as Jetty's default output buffer.
+     */
+    private static final int RESPONSE_BUFFER_SIZE = 32 * 1024;
+
+    /**
+     * Makes the response of {@code ctx} write to the returned bytes, committed as a servlet container would commit
+     * it: once flushed, closed, or past its buffer size. Until then, {@code resetBuffer()} drops the written bytes.
+     */
+    private ByteArrayOutputStream captureOutputStream() {
+        return captureOutputStream(RESPONSE_BUFFER_SIZE);
+    }
+
+    private ByteArrayOutputStream captureOutputStream(int bufferSize) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean[] committed = {false};
+        HttpServletResponse res = mock(HttpServletResponse.class);
+        try {
+            when(res.getOutputStream()).thenReturn(new ServletOutputStream() {
+                @Override public boolean isReady() { return true; }
+                @Override public void setWriteListener(WriteListener listener) { }
+                @Override public void write(int b) {
+                    bytes.write(b);
+                    if (bytes.size() > bufferSize) committed[0] = true;
+                }
+                @Override public void flush() { committed[0] = true; }
+                @Override public void close() { committed[0] = true; }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        when(res.isCommitted()).thenAnswer(inv -> committed[0]);
+        doAnswer(inv -> {
+            if (committed[0]) throw new IllegalStateException("committed");
+            bytes.reset();
+            return null;
+        }).when(res).resetBuffer();
+        when(ctx.res()).thenReturn(res);
+        return bytes;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void export_streamsEveryPostAsOneArray() throws Exception {
+        ByteArrayOutputStream bytes = captureOutputStream();
+        when(ctx.attribute("uid")).thenReturn(3L);
+        doAnswer(inv -> {
+            Consumer<Post> action = inv.getArgument(0);
+            action.accept(new Post(2L, 3L, "b", Instant.parse("2024-05-10T09:00:00Z"), LocalDate.of(2024, 5, 11)));
+            action.accept(new Post(1L, 3L, "a", Instant.parse("2024-05-10T08:00:00Z"), LocalDate.of(2024, 5, 11)));
+            return null;
+        }).when(postService).streamAll(any());
+
+        controller.export(ctx);
+
+        List<Map<String, Object>> posts = new ObjectMapper().readValue(bytes.toByteArray(), List.class);
+        assertEquals(List.of(2, 1), posts.stream().map(p -> p.get("id")).toList());
+        assertEquals("a", posts.get(1).get(ApiConstants.Keys.CONTENT));
+        assertEquals("2024-05-11", posts.get(1).get("displayAt"));
+    }
+
+    @Test
+    public void export_failureBeforeFirstRow_returns500() {
+        ByteArrayOutputStream bytes = captureOutputStream();
+        when(ctx.attribute("uid")).thenReturn(3L);
+        doThrow(new RuntimeException("db down")).when(postService).streamAll(any());
+
+        controller.export(ctx);
+
+        // the opening bracket is dropped, not sent ahead of the error body
+        verify(ctx).status(500);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INTERNAL_ERROR));
+        assertFalse(ctx.res().isCommitted());
+        assertEquals(0, bytes.size());
+    }
+
+    @Test
+    public void export_overloaded_returns503() {
+        ByteArrayOutputStream bytes = captureOutputStream();
+        when(ctx.attribute("uid")).thenReturn(3L);
+        doThrow(new OverloadedException("db", 1)).when(postService).streamAll(any());
+
+        controller.export(ctx);
+
+        verify(ctx).status(503);
+        assertFalse(ctx.res().isCommitted());
+        assertEquals(0, bytes.size());
+    }
+
+    @Test
+    public void export_failureAfterRowsBeforeCommit_resetsBufferAndReturns500() {
+        ByteArrayOutputStream bytes = captureOutputStream();
+        when(ctx.attribute("uid")).thenReturn(3L);
+        doAnswer(inv -> {
+            Consumer<Post> action = inv.getArgument(0);
+            action.accept(new Post(1L, 3L, "a", Instant.parse("2024-05-10T08:00:00Z"), LocalDate.of(2024, 5, 11)));
+            throw new RuntimeException("connection lost");
+        }).when(postService).streamAll(any());
+
+        controller.export(ctx);
+
+        HttpServletResponse res = ctx.res();
+        InOrder order = inOrder(res, ctx);
+        order.verify(res).resetBuffer();
+        order.verify(ctx).status(500);
+        order.verify(ctx).result(Json.errorBody(ApiConstants.Errors.INTERNAL_ERROR));
+        assertFalse(res.isCommitted());
+        assertEquals(0, bytes.size());
+    }
+
+    @Test
+    public void export_failureAfterCommit_leavesTheArrayOpen() {
+        ByteArrayOutputStream bytes = captureOutputStream(1024);
+        when(ctx.attribute("uid")).thenReturn(3L);
+        doAnswer(inv -> {
+            Consumer<Post> action = inv.getArgument(0);
+            // rows reach the response once the generator's own buffer is full
+            for (long id = 1; !ctx.res().isCommitted(); id++) {
+                action.accept(new Post(id, 3L, "a", Instant.parse("2024-05-10T08:00:00Z"), LocalDate.of(2024, 5, 11)));
+            }
+            throw new RuntimeException("connection lost");
+        }).when(postService).streamAll(any());
+
+        controller.export(ctx);
+
+        verify(ctx.res(), never()).resetBuffer();
+        verify(ctx, never()).status(anyInt());
+        String body = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(body.startsWith("[{\"id\":1"), body);
+        assertFalse(body.endsWith("]"), body);
+    }
+
+    @Test
+    public void export_unauthenticated_returns401() {
+        controller.export(ctx);
+
+        verify(ctx).status(401);
+        verify(postService, never()).streamAll(any());
+    }
+
+    @Test
+    public void export_pastMaxDuration_stopsStreaming() {
+        // each reading of the clock is 6 minutes later than the previous one
+        Instant start = Instant.parse("2024-05-10T12:00:00Z");
+        int[] reads = {0};
+        Clock clock = new Clock() {
+            @Override public ZoneOffset getZone() { return ZoneOffset.UTC; }
+            @Override public Clock withZone(ZoneId zone) { return this; }
+            @Override public Instant instant() { return start.plus(PostController.MAX_EXPORT_DURATION.multipliedBy(3 * reads[0]++).dividedBy(5)); }
+        };
+        controller = new PostController(postService, authService, Runnable::run, clock);
+        captureOutputStream();
+        when(ctx.attribute("uid")).thenReturn(3L);
+        int[] written = {0};
+        doAnswer(inv -> {
+            Consumer<Post> action = inv.getArgument(0);
+            for (int i = 0; i < 3; i++) {
+                action.accept(new Post(i, 3L, "p", start, LocalDate.of(2024, 5, 11)));
+                written[0]++;
+            }
+            return null;
+        }).when(postService).streamAll(any());
+
+        controller.export(ctx);
+
+        assertEquals(1, written[0]);
     }
 
     @Test
     public void list_returnsPosts() {
         Post p = new Post(1L, 2L, "c", Instant.now(), LocalDate.now());
-        when(postService.findAll()).thenReturn(List.of(p));
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
 
         controller.list(ctx);
 
-        verify(ctx).json(any());
+        verify(ctx).result(any(byte[].class));
     }
 
     @Test
     public void list_usesCache() {
         Post p = new Post(1L, 2L, "c", Instant.now(), LocalDate.now());
-        when(postService.findAll()).thenReturn(List.of(p));
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
 
         controller.list(ctx);
         controller.list(ctx);
 
-        verify(postService, times(1)).findAll();
+        verify(postService, times(1)).findPage(null, FIRST_PAGE_FETCH);
     }
 
     @Test
     public void create_invalidatesCache() {
         Post p = new Post(1L, 3L, "c", Instant.now(), LocalDate.now());
-        when(postService.findAll()).thenReturn(List.of(p));
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
         when(ctx.attribute("uid")).thenReturn(3L);
-        when(ctx.bodyAsClass(PostDto.class)).thenReturn(new PostDto("new"));
+        when(ctx.bodyAsBytes()).thenReturn(json(new PostDto("new")));
         when(postService.create(3L, "new")).thenReturn(p);
 
         controller.list(ctx);
         controller.create(ctx);
         controller.list(ctx);
 
-        verify(postService, times(2)).findAll();
+        verify(postService, times(2)).findPage(null, FIRST_PAGE_FETCH);
     }
 
     @Test
     public void update_invalidatesCache() {
         Post p = new Post(1L, 3L, "c", Instant.now(), LocalDate.now());
-        when(postService.findAll()).thenReturn(List.of(p));
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
         when(ctx.attribute("uid")).thenReturn(3L);
         when(ctx.pathParam("id")).thenReturn("1");
-        when(postService.findById(1L)).thenReturn(Optional.of(p));
-        when(ctx.bodyAsClass(Map.class)).thenReturn(Map.of(ApiConstants.Keys.CONTENT, "updated"));
-        when(postService.updateContent(1L, "updated")).thenReturn(p);
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.CONTENT, "updated")));
+        when(postService.updateContent(1L, 3L, "updated", Precondition.NONE)).thenReturn(WriteResult.ok(p));
 
         controller.list(ctx);
         controller.update(ctx);
         controller.list(ctx);
 
-        verify(postService, times(2)).findAll();
+        verify(postService, times(2)).findPage(null, FIRST_PAGE_FETCH);
     }
 
     @Test
     public void delete_invalidatesCache() {
         Post p = new Post(1L, 3L, "c", Instant.now(), LocalDate.now());
-        when(postService.findAll()).thenReturn(List.of(p));
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
         when(ctx.attribute("uid")).thenReturn(3L);
         when(ctx.pathParam("id")).thenReturn("1");
-        when(postService.findById(1L)).thenReturn(Optional.of(p));
+        when(postService.delete(1L, 3L, Precondition.NONE)).thenReturn(WriteResult.ok(p));
 
         controller.list(ctx);
         controller.delete(ctx);
         controller.list(ctx);
 
-        verify(postService, times(2)).findAll();
+        verify(postService, times(2)).findPage(null, FIRST_PAGE_FETCH);
     }
 
     @Test
     public void update_notFound_returns404() {
         when(ctx.attribute("uid")).thenReturn(1L);
         when(ctx.pathParam("id")).thenReturn("5");
-        when(postService.findById(5L)).thenReturn(Optional.empty());
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.CONTENT, "updated")));
+        when(postService.updateContent(5L, 1L, "updated", Precondition.NONE)).thenReturn(WriteResult.failed(WriteResult.Status.NOT_FOUND));
 
         controller.update(ctx);
 
@@ -162,19 +434,44 @@ public class PostControllerTest {
     public void update_notAuthor_returns403() {
         when(ctx.attribute("uid")).thenReturn(2L);
         when(ctx.pathParam("id")).thenReturn("10");
-        Post p = new Post(10L, 3L, "x", Instant.now(), LocalDate.now());
-        when(postService.findById(10L)).thenReturn(Optional.of(p));
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.CONTENT, "updated")));
+        when(postService.updateContent(10L, 2L, "updated", Precondition.NONE)).thenReturn(WriteResult.failed(WriteResult.Status.FORBIDDEN));
 
         controller.update(ctx);
 
         verify(ctx).status(403);
     }
 
+    @Test
+    public void update_singleRoundTrip_doesNotLoadThePost() throws Exception {
+        Post p = new Post(1L, 3L, "updated", Instant.now(), LocalDate.now());
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.pathParam("id")).thenReturn("1");
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.CONTENT, "updated")));
+        when(postService.updateContent(1L, 3L, "updated", Precondition.NONE)).thenReturn(WriteResult.ok(p));
+
+        controller.update(ctx);
+
+        verify(postService, never()).findById(anyLong());
+        assertEquals("updated", jsonBody().get(ApiConstants.Keys.CONTENT));
+    }
+
+    @Test
+    public void update_missingBody_returns400() {
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.pathParam("id")).thenReturn("1");
+
+        controller.update(ctx);
+
+        verify(ctx).status(400);
+        verifyNoInteractions(postService);
+    }
+
     @Test
     public void delete_notFound_returns404() {
         when(ctx.attribute("uid")).thenReturn(1L);
         when(ctx.pathParam("id")).thenReturn("7");
-        when(postService.findById(7L)).thenReturn(Optional.empty());
+        when(postService.delete(7L, 1L, Precondition.NONE)).thenReturn(WriteResult.failed(WriteResult.Status.NOT_FOUND));
 
         controller.delete(ctx);
 
@@ -185,8 +482,7 @@ public class PostControllerTest {
     public void delete_notAuthor_returns403() {
         when(ctx.attribute("uid")).thenReturn(2L);
         when(ctx.pathParam("id")).thenReturn("8");
-        Post p = new Post(8L, 9L, "x", Instant.now(), LocalDate.now());
-        when(postService.findById(8L)).thenReturn(Optional.of(p));
+        when(postService.delete(8L, 2L, Precondition.NONE)).thenReturn(WriteResult.failed(WriteResult.Status.FORBIDDEN));
 
         controller.delete(ctx);
 
@@ -198,14 +494,84 @@ public class PostControllerTest {
         when(ctx.attribute("uid")).thenReturn(4L);
         when(ctx.pathParam("id")).thenReturn("11");
         Post p = new Post(11L, 4L, "x", Instant.now(), LocalDate.now());
-        when(postService.findById(11L)).thenReturn(Optional.of(p));
+        when(postService.delete(11L, 4L, Precondition.NONE)).thenReturn(WriteResult.ok(p));
 
         controller.delete(ctx);
 
-        verify(postService).delete(11L);
+        verify(postService).delete(11L, 4L, Precondition.NONE);
+        verify(postService, never()).findById(anyLong());
         verify(ctx).status(204);
     }
 
+    @Test
+    public void update_ifMatch_isCheckedByTheUpdate() {
+        Post updated = new Post(1L, 3L, "updated", Instant.now(), LocalDate.now(), 5, Instant.parse("2026-01-22T10:00:00Z"));
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.pathParam("id")).thenReturn("1");
+        when(ctx.header("If-Match")).thenReturn("\"v4\"");
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.CONTENT, "updated")));
+        when(postService.updateContent(1L, 3L, "updated", Precondition.ifMatch(4))).thenReturn(WriteResult.ok(updated));
+
+        controller.update(ctx);
+
+        verify(ctx).header("ETag", "\"v5\"");
+        verify(ctx).header("Last-Modified", "Thu, 22 Jan 2026 10:00:00 GMT");
+        verify(ctx, never()).status(412);
+    }
+
+    @Test
+    public void update_staleVersion_returns412() {
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.pathParam("id")).thenReturn("1");
+        when(ctx.header("If-Match")).thenReturn("\"v4\"");
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.CONTENT, "updated")));
+        when(postService.updateContent(1L, 3L, "updated", Precondition.ifMatch(4))).thenReturn(WriteResult.failed(WriteResult.Status.PRECONDITION_FAILED));
+
+        controller.update(ctx);
+
+        verify(ctx).status(412);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.PRECONDITION_FAILED));
+    }
+
+    @Test
+    public void delete_ifUnmodifiedSince_isCheckedByTheDelete() {
+        when(ctx.attribute("uid")).thenReturn(4L);
+        when(ctx.pathParam("id")).thenReturn("11");
+        when(ctx.header("If-Unmodified-Since")).thenReturn("Thu, 22 Jan 2026 10:00:00 GMT");
+        when(postService.delete(11L, 4L, Precondition.ifUnmodifiedSince(Instant.parse("2026-01-22T10:00:00Z"))))
+            .thenReturn(WriteResult.failed(WriteResult.Status.PRECONDITION_FAILED));
+
+        controller.delete(ctx);
+
+        verify(ctx).status(412);
+    }
+
+    @Test
+    public void precondition_parsesIfMatchAndIfUnmodifiedSince() {
+        when(ctx.header("If-Match")).thenReturn("\"v12\"", "\"v12-gz\"", "*", "W/\"v12\"", "\"abc\"");
+        assertEquals(Precondition.ifMatch(12), PostController.precondition(ctx));
+        assertEquals(Precondition.ifMatch(12), PostController.precondition(ctx));
+        assertEquals(Precondition.NONE, PostController.precondition(ctx));
+        assertNull(PostController.precondition(ctx));
+        assertNull(PostController.precondition(ctx));
+
+        Context other = mock(Context.class);
+        when(other.header("If-Unmodified-Since")).thenReturn("yesterday");
+        assertEquals(Precondition.NONE, PostController.precondition(other));
+    }
+
+    @Test
+    public void get_usesVersionTagAndLastModified() {
+        when(ctx.pathParam("id")).thenReturn("7");
+        when(postService.findById(7L)).thenReturn(Optional.of(
+            new Post(7L, 2L, "c", Instant.now(), LocalDate.now(), 3, Instant.parse("2026-01-22T10:00:00Z"))));
+
+        controller.get(ctx);
+
+        verify(ctx).header("ETag", "\"v3\"");
+        verify(ctx).header("Last-Modified", "Thu, 22 Jan 2026 10:00:00 GMT");
+    }
+
     @Test
     public void list_withDateFilter_returnsPosts() {
         LocalDate date = LocalDate.of(2026, 1, 22);
@@ -216,7 +582,7 @@ public class PostControllerTest {
         controller.list(ctx);
 
         verify(postService).findByDate(date);
-        verify(ctx).json(any());
+        verify(ctx).result(any(byte[].class));
     }
 
     @Test
@@ -226,7 +592,7 @@ public class PostControllerTest {
         controller.list(ctx);
 
         verify(ctx).status(400);
-        verify(ctx).json(argThat(obj -> ((Map) obj).get(ApiConstants.Keys.ERROR).equals("invalid.date.format")));
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INVALID_DATE_FORMAT));
     }
 
     @Test
@@ -241,4 +607,344 @@ public class PostControllerTest {
 
         verify(postService, times(1)).findByDate(date);
     }
+
+    @Test
+    public void list_withDateFilter_servesDailySnapshotAndItsPatches() throws Exception {
+        LocalDate today = LocalDate.of(2026, 1, 22);
+        LocalDate tomorrow = today.plusDays(1);
+        when(postService.findByDate(any())).thenReturn(List.of());
+        controller = new PostController(postService, authService, Runnable::run,
+            Clock.fixed(Instant.parse("2026-01-22T12:00:00Z"), ZoneOffset.UTC));
+        controller.startDailySnapshot(Duration.ofHours(1));
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.bodyAsBytes()).thenReturn(json(new PostDto("Salut")));
+        when(postService.create(3L, "Salut")).thenReturn(new Post(1L, 3L, "Salut", Instant.parse("2026-01-22T12:00:00Z"), tomorrow));
+        controller.create(ctx);
+
+        Context read = mock(Context.class);
+        when(read.queryParam("date")).thenReturn(tomorrow.toString());
+        controller.list(read);
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(read).result(captor.capture());
+        List<?> posts = new ObjectMapper().readValue(captor.getValue(), List.class);
+        assertEquals(1, ((Map<?, ?>) posts.get(0)).get("id"));
+        verify(postService, times(1)).findByDate(today);
+        verify(postService, times(1)).findByDate(tomorrow);
+    }
+
+    @Test
+    public void list_morePostsThanLimit_returnsNextCursor() throws Exception {
+        Post first = new Post(3L, 2L, "a", Instant.parse("2026-01-22T10:00:00Z"), LocalDate.now());
+        Post second = new Post(2L, 2L, "b", Instant.parse("2026-01-22T09:00:00Z"), LocalDate.now());
+        Post extra = new Post(1L, 2L, "c", Instant.parse("2026-01-22T08:00:00Z"), LocalDate.now());
+        when(ctx.queryParam("limit")).thenReturn("2");
+        when(postService.findPage(null, 3)).thenReturn(List.of(first, second, extra));
+
+        controller.list(ctx);
+
+        String expectedNext = PostCursor.after(second).encode();
+        Map<?, ?> body = jsonBody();
+        assertEquals(2, ((List<?>) body.get(ApiConstants.Keys.POSTS)).size());
+        assertEquals(expectedNext, body.get(ApiConstants.Keys.NEXT));
+    }
+
+    @Test
+    public void list_lastPage_hasNoNextCursor() throws Exception {
+        Post p = new Post(1L, 2L, "c", Instant.now(), LocalDate.now());
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
+
+        controller.list(ctx);
+
+        Map<?, ?> body = jsonBody();
+        assertTrue(body.containsKey(ApiConstants.Keys.NEXT));
+        assertNull(body.get(ApiConstants.Keys.NEXT));
+    }
+
+    @Test
+    public void list_withCursor_passesDecodedCursor() {
+        PostCursor cursor = new PostCursor(Instant.parse("2026-01-22T08:00:00Z"), 7L);
+        when(ctx.queryParam("cursor")).thenReturn(cursor.encode());
+        when(postService.findPage(cursor, FIRST_PAGE_FETCH)).thenReturn(List.of());
+
+        controller.list(ctx);
+
+        verify(postService).findPage(cursor, FIRST_PAGE_FETCH);
+    }
+
+    @Test
+    public void list_withInvalidCursor_returns400() {
+        when(ctx.queryParam("cursor")).thenReturn("not-a-cursor");
+
+        controller.list(ctx);
+
+        verify(ctx).status(400);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INVALID_CURSOR));
+    }
+
+    @Test
+    public void list_withLimitOutOfRange_returns400() {
+        when(ctx.queryParam("limit")).thenReturn(String.valueOf(PostController.MAX_PAGE_SIZE + 1));
+
+        controller.list(ctx);
+
+        verify(ctx).status(400);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INVALID_LIMIT));
+        verifyNoInteractions(postService);
+    }
+
+    @Test
+    public void list_cacheHit_writesSameEncodedBody() {
+        Post p = new Post(1L, 2L, "c", Instant.now(), LocalDate.now());
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
+
+        controller.list(ctx);
+        controller.list(ctx);
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(ctx, times(2)).result(captor.capture());
+        assertSame(captor.getAllValues().get(0), captor.getAllValues().get(1));
+        verify(ctx, times(2)).header(eq("ETag"), anyString());
+    }
+
+    @Test
+    public void list_largeBodyAndGzipAccepted_writesPrecompressedBody() {
+        Post p = new Post(1L, 2L, "x".repeat(CachedBody.MIN_GZIP_SIZE), Instant.now(), LocalDate.now());
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
+        when(ctx.header("Accept-Encoding")).thenReturn("gzip, deflate");
+
+        controller.list(ctx);
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(ctx).header("Content-Encoding", "gzip");
+        verify(ctx).result(captor.capture());
+        assertTrue(captor.getValue().length < CachedBody.MIN_GZIP_SIZE);
+    }
+
+    @Test
+    public void list_ifNoneMatchCurrent_returns304WithoutBody() {
+        Post p = new Post(1L, 2L, "c", Instant.now(), LocalDate.now());
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
+        controller.list(ctx);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(ctx).header(eq("ETag"), etag.capture());
+
+        Context revalidation = mock(Context.class);
+        when(revalidation.header("If-None-Match")).thenReturn("\"other\", W/" + etag.getValue());
+        controller.list(revalidation);
+
+        verify(revalidation).status(304);
+        verify(revalidation).header("ETag", etag.getValue());
+        verify(revalidation).header("Cache-Control", PostController.CACHE_CONTROL);
+        verify(revalidation, never()).result(any(byte[].class));
+    }
+
+    @Test
+    public void list_gzipRepresentation_hasItsOwnEtag() {
+        Post p = new Post(1L, 2L, "x".repeat(CachedBody.MIN_GZIP_SIZE), Instant.now(), LocalDate.now());
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
+        controller.list(ctx);
+        ArgumentCaptor<String> plain = ArgumentCaptor.forClass(String.class);
+        verify(ctx).header(eq("ETag"), plain.capture());
+
+        Context compressed = mock(Context.class);
+        when(compressed.header("Accept-Encoding")).thenReturn("gzip");
+        when(compressed.header("If-None-Match")).thenReturn(plain.getValue());
+        controller.list(compressed);
+
+        verify(compressed, never()).status(304);
+        verify(compressed).header(eq("ETag"), argThat(tag -> !tag.equals(plain.getValue()) && tag.endsWith("-gz\"")));
+    }
+
+    @Test
+    public void get_existingPost_returnsItWithEtag() throws Exception {
+        when(ctx.pathParam("id")).thenReturn("7");
+        when(postService.findById(7L)).thenReturn(Optional.of(new Post(7L, 2L, "c", Instant.now(), LocalDate.now())));
+
+        controller.get(ctx);
+
+        verify(ctx).header(eq("ETag"), anyString());
+        assertEquals(7, jsonBody().get("id"));
+    }
+
+    @Test
+    public void get_ifNoneMatchCurrent_returns304() {
+        when(ctx.pathParam("id")).thenReturn("7");
+        when(postService.findById(7L)).thenReturn(Optional.of(new Post(7L, 2L, "c", Instant.parse("2026-01-22T10:00:00Z"), LocalDate.now())));
+        controller.get(ctx);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(ctx).header(eq("ETag"), etag.capture());
+
+        Context revalidation = mock(Context.class);
+        when(revalidation.pathParam("id")).thenReturn("7");
+        when(revalidation.header("If-None-Match")).thenReturn(etag.getValue());
+        controller.get(revalidation);
+
+        verify(revalidation).status(304);
+        verify(revalidation, never()).result(any(byte[].class));
+    }
+
+    @Test
+    public void get_ifNoneMatchCurrentGzip_returns304WithoutEncoding() {
+        Post post = mock(Post.class);
+        when(post.getVersion()).thenReturn(3L);
+        when(post.getUpdatedAt()).thenReturn(Instant.parse("2026-01-22T10:00:00Z"));
+        when(postService.findById(7L)).thenReturn(Optional.of(post));
+        when(ctx.pathParam("id")).thenReturn("7");
+        when(ctx.header("Accept-Encoding")).thenReturn("gzip, deflate");
+        when(ctx.header("If-None-Match")).thenReturn("\"v3-gz\"");
+
+        controller.get(ctx);
+
+        verify(ctx).status(304);
+        verify(ctx).header("ETag", "\"v3-gz\"");
+        verify(post, never()).getContent();
+        verify(ctx, never()).result(any(byte[].class));
+    }
+
+    @Test
+    public void get_unknownOrInvalidId_returns404() {
+        when(ctx.pathParam("id")).thenReturn("7", "abc");
+        when(postService.findById(7L)).thenReturn(Optional.empty());
+
+        controller.get(ctx);
+        controller.get(ctx);
+
+        verify(ctx, times(2)).status(404);
+    }
+
+    @Test
+    public void create_keepsCachedEntriesOfOtherDates() {
+        LocalDate tomorrow = LocalDate.of(2026, 1, 23);
+        LocalDate nextWeek = LocalDate.of(2026, 1, 30);
+        Post created = new Post(5L, 3L, "new", Instant.now(), tomorrow);
+        when(postService.findByDate(tomorrow)).thenReturn(List.of());
+        when(postService.findByDate(nextWeek)).thenReturn(List.of());
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.bodyAsBytes()).thenReturn(json(new PostDto("new")));
+        when(postService.create(3L, "new")).thenReturn(created);
+
+        when(ctx.queryParam("date")).thenReturn("2026-01-23");
+        controller.list(ctx);
+        when(ctx.queryParam("date")).thenReturn("2026-01-30");
+        controller.list(ctx);
+
+        controller.create(ctx);
+
+        when(ctx.queryParam("date")).thenReturn("2026-01-23");
+        controller.list(ctx);
+        when(ctx.queryParam("date")).thenReturn("2026-01-30");
+        controller.list(ctx);
+
+        verify(postService, times(2)).findByDate(tomorrow);
+        verify(postService, times(1)).findByDate(nextWeek);
+    }
+
+    @Test
+    public void update_keepsCachedEntriesOfOtherDates() {
+        LocalDate postDate = LocalDate.of(2026, 1, 23);
+        LocalDate otherDate = LocalDate.of(2026, 1, 24);
+        Post p = new Post(1L, 3L, "c", Instant.now(), postDate);
+        when(postService.findByDate(otherDate)).thenReturn(List.of());
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.pathParam("id")).thenReturn("1");
+        when(ctx.bodyAsBytes()).thenReturn(json(Map.of(ApiConstants.Keys.CONTENT, "updated")));
+        when(postService.updateContent(1L, 3L, "updated", Precondition.NONE)).thenReturn(WriteResult.ok(p));
+        when(ctx.queryParam("date")).thenReturn("2026-01-24");
+
+        controller.list(ctx);
+        controller.update(ctx);
+        controller.list(ctx);
+
+        verify(postService, times(1)).findByDate(otherDate);
+    }
+
+    @Test
+    public void list_concurrentMisses_shareOneBackgroundLoad() throws Exception {
+        List<Runnable> loads = new ArrayList<>();
+        controller = new PostController(postService, authService, loads::add);
+        Post p = new Post(1L, 2L, "c", Instant.now(), LocalDate.now());
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenReturn(List.of(p));
+
+        controller.list(ctx);
+        controller.list(ctx);
+
+        verifyNoInteractions(postService);
+        ArgumentCaptor<Supplier<CompletableFuture<?>>> futures = ArgumentCaptor.forClass(Supplier.class);
+        verify(ctx, times(2)).future(futures.capture());
+
+        runAll(loads);
+        for (Supplier<CompletableFuture<?>> future : futures.getAllValues()) future.get().join();
+
+        verify(postService, times(1)).findPage(null, FIRST_PAGE_FETCH);
+        verify(ctx, times(2)).result(any(byte[].class));
+    }
+
+    @Test
+    public void list_backgroundLoadFails_returns500() {
+        List<Runnable> loads = new ArrayList<>();
+        controller = new PostController(postService, authService, loads::add);
+        when(postService.findPage(null, FIRST_PAGE_FETCH)).thenThrow(new RuntimeException("db down"));
+
+        controller.list(ctx);
+        ArgumentCaptor<Supplier<CompletableFuture<?>>> future = ArgumentCaptor.forClass(Supplier.class);
+        verify(ctx).future(future.capture());
+        runAll(loads);
+        future.getValue().get().join();
+
+        verify(ctx).status(500);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.INTERNAL_ERROR));
+    }
+
+    @Test
+    public void list_loaderSaturated_returns503WithRetryAfter() {
+        controller = new PostController(postService, authService, PostController.loaderExecutor(1, 1));
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        when(postService.findByDate(any())).thenAnswer(inv -> {
+            release.join();
+            return List.of();
+        });
+        try {
+            // one load runs, one waits: the queue is full
+            for (int day = 1; day <= 2; day++) {
+                Context other = mock(Context.class);
+                when(other.queryParam("date")).thenReturn("2026-01-0" + day);
+                controller.list(other);
+            }
+            when(ctx.queryParam("date")).thenReturn("2026-01-03");
+
+            controller.list(ctx);
+
+            verify(ctx).header(ApiConstants.Headers.RETRY_AFTER, "1");
+            verify(ctx).status(503);
+            verify(ctx, never()).future(any());
+        } finally {
+            release.complete(null);
+        }
+    }
+
+    @Test
+    public void list_deeperPages_areNotCached() {
+        PostCursor cursor = new PostCursor(Instant.parse("2026-01-22T08:00:00Z"), 7L);
+        when(ctx.queryParam("cursor")).thenReturn(cursor.encode());
+        when(postService.findPage(cursor, FIRST_PAGE_FETCH)).thenReturn(List.of());
+
+        controller.list(ctx);
+        controller.list(ctx);
+
+        verify(postService, times(2)).findPage(cursor, FIRST_PAGE_FETCH);
+    }
+
+    @Test
+    public void create_databaseOverloaded_returns503WithRetryAfter() {
+        when(ctx.attribute("uid")).thenReturn(3L);
+        when(ctx.bodyAsBytes()).thenReturn(json(new PostDto("hello")));
+        when(postService.create(3L, "hello")).thenThrow(new OverloadedException("database is overloaded", 1));
+
+        controller.create(ctx);
+
+        verify(ctx).header(ApiConstants.Headers.RETRY_AFTER, "1");
+        verify(ctx).status(503);
+        verify(ctx).result(Json.errorBody(ApiConstants.Errors.SERVICE_UNAVAILABLE));
+    }
 }
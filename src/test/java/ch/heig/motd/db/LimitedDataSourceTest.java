@@ -0,0 +1,53 @@
+package ch.heig.motd.db;
+
+import ch.heig.motd.concurrent.Bulkhead;
+import ch.heig.motd.concurrent.OverloadedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LimitedDataSourceTest {
+    private DataSource delegate;
+    private LimitedDataSource ds;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        delegate = mock(DataSource.class);
+        when(delegate.getConnection()).thenAnswer(inv -> mock(Connection.class));
+        ds = new LimitedDataSource(delegate, new Bulkhead("db", 1, 0, Duration.ofMillis(10)));
+    }
+
+    @Test
+    public void getConnection_beyondLimit_throwsOverloaded() throws SQLException {
+        Connection c = ds.getConnection();
+
+        assertThrows(OverloadedException.class, ds::getConnection);
+        c.close();
+    }
+
+    @Test
+    public void close_releasesPermitOnce() throws SQLException {
+        Connection c = ds.getConnection();
+        c.close();
+        c.close();
+
+        Connection next = ds.getConnection();
+        assertThrows(OverloadedException.class, ds::getConnection);
+        next.close();
+    }
+
+    @Test
+    public void getConnection_delegateFails_releasesPermit() throws SQLException {
+        when(delegate.getConnection()).thenThrow(new SQLException("down")).thenAnswer(inv -> mock(Connection.class));
+
+        assertThrows(SQLException.class, ds::getConnection);
+        assertNotNull(ds.getConnection());
+    }
+}
@@ -0,0 +1,115 @@
+package ch.heig.motd.db;
+
+import ch.heig.motd.concurrent.OverloadedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReadReplicaRouterTest {
+    private DataSource primary;
+    private DataSource replicaA;
+    private DataSource replicaB;
+    private Connection primaryConn;
+    private Connection connA;
+    private Connection connB;
+    private AtomicLong clock;
+    private ReadReplicaRouter router;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        primary = mock(DataSource.class);
+        replicaA = mock(DataSource.class);
+        replicaB = mock(DataSource.class);
+        primaryConn = mock(Connection.class);
+        connA = mock(Connection.class);
+        connB = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConn);
+        when(replicaA.getConnection()).thenReturn(connA);
+        when(replicaB.getConnection()).thenReturn(connB);
+        clock = new AtomicLong();
+        router = new ReadReplicaRouter(primary, List.of(replicaA, replicaB), Duration.ofSeconds(5), clock::get);
+    }
+
+    @Test
+    public void getConnection_roundRobinsOverReplicas() throws SQLException {
+        assertSame(connA, router.getConnection());
+        assertSame(connB, router.getConnection());
+        assertSame(connA, router.getConnection());
+        verify(primary, never()).getConnection();
+    }
+
+    @Test
+    public void getConnection_afterWrite_sticksToPrimaryUntilWindowEnds() throws SQLException {
+        router.markWrite();
+
+        assertSame(primaryConn, router.getConnection());
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertSame(connA, router.getConnection());
+    }
+
+    @Test
+    public void getConnection_skipsUnhealthyReplica() throws SQLException {
+        when(connA.isValid(anyInt())).thenReturn(false);
+        when(connB.isValid(anyInt())).thenReturn(true);
+
+        router.checkHealth();
+
+        assertFalse(router.isHealthy(0));
+        assertSame(connB, router.getConnection());
+        assertSame(connB, router.getConnection());
+    }
+
+    @Test
+    public void getConnection_failingReplica_isMarkedUnhealthyAndSkipped() throws SQLException {
+        when(replicaA.getConnection()).thenThrow(new SQLException("down"));
+
+        assertSame(connB, router.getConnection());
+        assertFalse(router.isHealthy(0));
+    }
+
+    @Test
+    public void getConnection_saturatedReplica_isSkippedButStaysHealthy() throws SQLException {
+        when(replicaA.getConnection()).thenThrow(new OverloadedException("replica-0 is overloaded", 1));
+        when(replicaB.getConnection()).thenThrow(new OverloadedException("replica-1 is overloaded", 1));
+
+        assertSame(primaryConn, router.getConnection());
+        assertTrue(router.isHealthy(0));
+        assertTrue(router.isHealthy(1));
+    }
+
+    @Test
+    public void getConnection_noHealthyReplica_fallsBackToPrimary() throws SQLException {
+        when(replicaA.getConnection()).thenThrow(new SQLException("down"));
+        when(replicaB.getConnection()).thenThrow(new SQLException("down"));
+
+        assertSame(primaryConn, router.getConnection());
+    }
+
+    @Test
+    public void checkHealth_recoveredReplica_isUsedAgain() throws SQLException {
+        when(connA.isValid(anyInt())).thenReturn(false, true);
+        when(connB.isValid(anyInt())).thenReturn(true);
+        router.checkHealth();
+        assertFalse(router.isHealthy(0));
+
+        router.checkHealth();
+
+        assertTrue(router.isHealthy(0));
+    }
+
+    @Test
+    public void primaryOnly_alwaysUsesPrimary() throws SQLException {
+        ReadReplicaRouter primaryOnly = ReadReplicaRouter.primaryOnly(primary);
+
+        assertSame(primaryConn, primaryOnly.getConnection());
+    }
+}
@@ -0,0 +1,72 @@
+package ch.heig.motd.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class BloomFilterTokenStoreTest {
+    private TokenStore delegate;
+    private SimpleMeterRegistry registry;
+    private BloomFilterTokenStore store;
+
+    @BeforeEach
+    public void setup() {
+        delegate = mock(TokenStore.class);
+        registry = new SimpleMeterRegistry();
+        store = new BloomFilterTokenStore(delegate, 1000, 0.01, registry);
+    }
+
+    @Test
+    public void isRevoked_unknownToken_answeredWithoutDelegate() {
+        assertFalse(store.isRevoked("jti-1"));
+
+        verify(delegate, never()).isRevoked(anyString());
+        assertEquals(1.0, registry.get("token.revocation.bloom.lookups").tag("result", "definite_miss").counter().count());
+    }
+
+    @Test
+    public void isRevoked_revokedToken_checkedInDelegate() {
+        Instant until = Instant.now().plusSeconds(3600);
+        when(delegate.isRevoked("jti-1")).thenReturn(true);
+
+        store.revoke("jti-1", until);
+
+        verify(delegate).revoke("jti-1", until);
+        assertTrue(store.isRevoked("jti-1"));
+    }
+
+    @Test
+    public void rotate_keepsRevocationsForOneGeneration() {
+        when(delegate.isRevoked("jti-1")).thenReturn(true);
+        store.revoke("jti-1", Instant.now().plusSeconds(3600));
+
+        store.rotate();
+        assertTrue(store.isRevoked("jti-1"));
+
+        store.rotate();
+        assertFalse(store.isRevoked("jti-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void syncRecent_addsRevocationsMadeElsewhere() {
+        store.resync();
+        assertFalse(store.isRevoked("jti-remote"));
+
+        doAnswer(inv -> {
+            inv.<BiConsumer<String, Instant>>getArgument(1).accept("jti-remote", Instant.now().plusSeconds(3600));
+            return null;
+        }).when(delegate).forEachActive(notNull(), any(BiConsumer.class));
+        when(delegate.isRevoked("jti-remote")).thenReturn(true);
+        store.syncRecent();
+
+        assertTrue(store.isRevoked("jti-remote"));
+    }
+}
@@ -0,0 +1,74 @@
+package ch.heig.motd.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class PostgresPostCopyTest {
+    private Connection c;
+    private CopyManager copyManager;
+    private Statement st;
+    private PostgresPostCopy copy;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        DataSource ds = mock(DataSource.class);
+        c = mock(Connection.class);
+        PGConnection pg = mock(PGConnection.class);
+        copyManager = mock(CopyManager.class);
+        st = mock(Statement.class);
+        when(ds.getConnection()).thenReturn(c);
+        when(c.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copyManager);
+        when(c.createStatement()).thenReturn(st);
+        copy = new PostgresPostCopy(ds);
+    }
+
+    @Test
+    public void exportCsv_streamsTheTableToTheOutput() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when(copyManager.copyOut(PostgresPostCopy.EXPORT_SQL, out)).thenReturn(3L);
+
+        assertEquals(3L, copy.exportCsv(out));
+        verify(c).close();
+    }
+
+    @Test
+    public void importCsv_loadsAndResetsTheSequenceInOneTransaction() throws Exception {
+        InputStream in = new ByteArrayInputStream(new byte[0]);
+        when(copyManager.copyIn(PostgresPostCopy.IMPORT_SQL, in)).thenReturn(2L);
+
+        assertEquals(2L, copy.importCsv(in));
+
+        InOrder order = inOrder(c, copyManager, st);
+        order.verify(c).setAutoCommit(false);
+        order.verify(copyManager).copyIn(PostgresPostCopy.IMPORT_SQL, in);
+        order.verify(st).execute(PostgresPostCopy.RESET_SEQUENCE_SQL);
+        order.verify(c).commit();
+    }
+
+    @Test
+    public void importCsv_failure_rollsBack() throws Exception {
+        when(copyManager.copyIn(any(String.class), any(InputStream.class))).thenThrow(new SQLException("duplicate key", "23505"));
+
+        assertThrows(RuntimeException.class, () -> copy.importCsv(new ByteArrayInputStream(new byte[0])));
+
+        verify(c).rollback();
+        verify(c, never()).commit();
+        verifyNoInteractions(st);
+    }
+}
@@ -0,0 +1,59 @@
+package ch.heig.motd.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PostgresPostRepositoryTest {
+    private Connection c;
+    private PreparedStatement ps;
+    private PostgresPostRepository repo;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        DataSource ds = mock(DataSource.class);
+        c = mock(Connection.class);
+        ps = mock(PreparedStatement.class);
+        when(ds.getConnection()).thenReturn(c);
+        when(c.createStatement()).thenReturn(mock(Statement.class));
+        when(c.prepareStatement(anyString())).thenReturn(ps);
+        repo = new PostgresPostRepository(ds);
+    }
+
+    @Test
+    public void streamAll_brokenConnection_keepsTheQueryFailure() throws Exception {
+        SQLException timeout = new SQLException("canceling statement due to statement timeout", "57014");
+        SQLException broken = new SQLException("This connection has been closed.", "08003");
+        when(ps.executeQuery()).thenThrow(timeout);
+        doThrow(broken).when(c).rollback();
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> repo.streamAll(p -> { }));
+
+        assertSame(timeout, e.getCause());
+        assertArrayEquals(new Throwable[] {broken}, timeout.getSuppressed());
+        verify(c).setAutoCommit(true);
+        verify(c).close();
+    }
+
+    @Test
+    public void streamAll_rollbackFailsAfterTheLastRow_throws() throws Exception {
+        when(ps.executeQuery()).thenReturn(mock(ResultSet.class));
+        SQLException broken = new SQLException("This connection has been closed.", "08003");
+        doThrow(broken).when(c).rollback();
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> repo.streamAll(p -> { }));
+
+        assertSame(broken, e.getCause());
+        verify(c).setAutoCommit(true);
+    }
+}
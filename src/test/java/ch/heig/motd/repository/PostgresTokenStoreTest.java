@@ -0,0 +1,83 @@
+package ch.heig.motd.repository;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PostgresTokenStoreTest {
+    private PreparedStatement ps;
+    private ResultSet rs;
+    private AtomicLong nanos;
+    private PostgresTokenStore store;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        DataSource ds = mock(DataSource.class);
+        Connection c = mock(Connection.class);
+        ps = mock(PreparedStatement.class);
+        rs = mock(ResultSet.class);
+        when(ds.getConnection()).thenReturn(c);
+        when(c.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        nanos = new AtomicLong();
+        store = new PostgresTokenStore(ds, Duration.ofSeconds(1), (Ticker) nanos::get);
+    }
+
+    @Test
+    public void isRevoked_notRevoked_cachedForShortTime() throws SQLException {
+        when(rs.next()).thenReturn(false);
+
+        assertFalse(store.isRevoked("jti-1"));
+        assertFalse(store.isRevoked("jti-1"));
+        verify(ps, times(1)).executeQuery();
+
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertFalse(store.isRevoked("jti-1"));
+        verify(ps, times(2)).executeQuery();
+    }
+
+    @Test
+    public void isRevoked_revokedInDatabase_cached() throws SQLException {
+        when(rs.next()).thenReturn(true);
+        when(rs.getTimestamp(1)).thenReturn(Timestamp.from(Instant.now().plusSeconds(3600)));
+
+        assertTrue(store.isRevoked("jti-1"));
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertTrue(store.isRevoked("jti-1"));
+        verify(ps, times(1)).executeQuery();
+    }
+
+    @Test
+    public void revoke_writesAndIsVisibleWithoutLookup() throws SQLException {
+        when(rs.next()).thenReturn(false);
+        assertFalse(store.isRevoked("jti-1"));
+
+        store.revoke("jti-1", Instant.now().plusSeconds(3600));
+
+        verify(ps).executeUpdate();
+        assertTrue(store.isRevoked("jti-1"));
+        verify(ps, times(1)).executeQuery();
+    }
+
+    @Test
+    public void purgeExpired_deletesInBatchesUntilDone() throws SQLException {
+        when(ps.executeUpdate()).thenReturn(10, 10, 3);
+
+        assertEquals(23, store.purgeExpired(10));
+        verify(ps).setInt(1, 10);
+        verify(ps, times(3)).executeUpdate();
+    }
+}
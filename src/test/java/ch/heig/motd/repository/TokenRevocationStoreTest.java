@@ -2,7 +2,15 @@ package ch.heig.motd.repository;
 
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,5 +26,149 @@ public class TokenRevocationStoreTest {
         Thread.sleep(300);
         assertFalse(store.isRevoked(jti));
     }
-}
 
+    @Test
+    public void revoke_uuidJtis_manyEntries() {
+        TokenRevocationStore store = new TokenRevocationStore();
+        Instant until = Instant.now().plusSeconds(3600);
+        String[] jtis = new String[10_000];
+        for (int i = 0; i < jtis.length; i++) {
+            jtis[i] = UUID.randomUUID().toString();
+            store.revoke(jtis[i], until);
+        }
+
+        for (String jti : jtis) assertTrue(store.isRevoked(jti));
+        assertFalse(store.isRevoked(UUID.randomUUID().toString()));
+        assertEquals(jtis.length, store.size());
+    }
+
+    @Test
+    public void isRevoked_nonCanonicalUuid_isADifferentJti() {
+        TokenRevocationStore store = new TokenRevocationStore();
+        String jti = UUID.randomUUID().toString();
+        store.revoke(jti, Instant.now().plusSeconds(3600));
+
+        assertTrue(store.isRevoked(jti));
+        assertFalse(store.isRevoked(jti.toUpperCase()));
+    }
+
+    @Test
+    public void sweep_dropsExpiredRevocationsNeverPresentedAgain() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        TokenRevocationStore store = new TokenRevocationStore(Duration.ofMinutes(1), Duration.ofHours(24), clock);
+        String kept = UUID.randomUUID().toString();
+        store.revoke(UUID.randomUUID().toString(), clock.instant().plus(Duration.ofMinutes(5)));
+        store.revoke("not-a-uuid", clock.instant().plus(Duration.ofMinutes(5)));
+        store.revoke(kept, clock.instant().plus(Duration.ofMinutes(30)));
+
+        clock.advance(Duration.ofMinutes(10));
+        store.sweep();
+
+        assertEquals(1, store.size());
+        assertTrue(store.isRevoked(kept));
+    }
+
+    @Test
+    public void revoke_again_updatesExpiry() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        TokenRevocationStore store = new TokenRevocationStore(Duration.ofMinutes(1), Duration.ofHours(24), clock);
+        String jti = UUID.randomUUID().toString();
+        store.revoke(jti, clock.instant().plus(Duration.ofMinutes(5)));
+        store.revoke(jti, clock.instant().plus(Duration.ofMinutes(30)));
+
+        clock.advance(Duration.ofMinutes(10));
+        store.sweep();
+
+        assertTrue(store.isRevoked(jti));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void sweep_onlyDropsExpired_andKeepsOthersReachable() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        TokenRevocationStore store = new TokenRevocationStore(Duration.ofMinutes(1), Duration.ofHours(24), clock);
+        Map<String, Instant> revoked = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String jti = UUID.randomUUID().toString();
+            Instant until = clock.instant().plus(Duration.ofSeconds(1 + i % 3600));
+            store.revoke(jti, until);
+            revoked.put(jti, until);
+        }
+
+        clock.advance(Duration.ofMinutes(30));
+        store.sweep();
+
+        // the ticks before the current one are swept
+        long kept = revoked.values().stream().filter(until -> !until.isBefore(clock.instant())).count();
+        assertEquals(kept, store.size());
+        revoked.forEach((jti, until) -> assertEquals(until.isAfter(clock.instant()), store.isRevoked(jti), jti));
+    }
+
+    @Test
+    public void sweep_beyondHorizon_keepsRevocationForItsRound() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        TokenRevocationStore store = new TokenRevocationStore(Duration.ofMinutes(1), Duration.ofMinutes(10), clock);
+        String jti = UUID.randomUUID().toString();
+        store.revoke(jti, clock.instant().plus(Duration.ofMinutes(25)));
+
+        for (int i = 0; i < 24; i++) {
+            clock.advance(Duration.ofMinutes(1));
+            store.sweep();
+        }
+        assertTrue(store.isRevoked(jti));
+
+        clock.advance(Duration.ofMinutes(2));
+        store.sweep();
+        assertFalse(store.isRevoked(jti));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void forEachActive_returnsOriginalJtis() {
+        TokenRevocationStore store = new TokenRevocationStore();
+        Instant until = Instant.now().plusSeconds(3600);
+        String uuid = UUID.randomUUID().toString();
+        store.revoke(uuid, until);
+        store.revoke("other", until);
+
+        Map<String, Instant> visited = new HashMap<>();
+        store.forEachActive(null, visited::put);
+
+        assertEquals(Map.of(uuid, Instant.ofEpochMilli(until.toEpochMilli()), "other", until), visited);
+    }
+
+    @Test
+    public void revoke_nonCanonicalUuids_keptAsOtherJtis() {
+        TokenRevocationStore store = new TokenRevocationStore();
+        String uuid = UUID.randomUUID().toString();
+        Instant until = Instant.now().plusSeconds(3600);
+        String[] jtis = {"1-2-3-4-5", uuid.toUpperCase(), uuid.replace('-', 'x'), uuid.substring(0, 35) + "\u00e9"};
+        for (String jti : jtis) store.revoke(jti, until);
+
+        for (String jti : jtis) assertTrue(store.isRevoked(jti), jti);
+        assertFalse(store.isRevoked(uuid));
+        Map<String, Instant> visited = new HashMap<>();
+        store.forEachActive(null, visited::put);
+        assertEquals(Set.of(jtis), visited.keySet());
+    }
+
+    /**
+     * Clock moved by hand.
+     */
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) { this.now = now; }
+
+        void advance(Duration d) { now = now.plus(d); }
+
+        @Override
+        public ZoneOffset getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+
+        @Override
+        public Instant instant() { return now; }
+    }
+}
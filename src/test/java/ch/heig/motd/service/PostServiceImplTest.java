@@ -1,9 +1,13 @@
 package ch.heig.motd.service;
 
+import ch.heig.motd.model.NewPost;
 import ch.heig.motd.model.Post;
-import ch.heig.motd.model.User;
+import ch.heig.motd.model.PostCursor;
+import ch.heig.motd.model.Precondition;
+import ch.heig.motd.model.WriteResult;
 import ch.heig.motd.repository.PostRepository;
-import ch.heig.motd.repository.UserRepository;
+import ch.heig.motd.repository.UnknownAuthorException;
+import io.javalin.http.NotFoundResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -17,20 +21,17 @@ import static org.mockito.Mockito.*;
 
 public class PostServiceImplTest {
     private PostRepository postRepo;
-    private UserRepository userRepo;
     private PostServiceImpl service;
 
     @BeforeEach
     public void setup() {
         postRepo = mock(PostRepository.class);
-        userRepo = mock(UserRepository.class);
-        service = new PostServiceImpl(postRepo, userRepo);
+        service = new PostServiceImpl(postRepo);
     }
 
     @Test
     public void create_delegatesToRepository() {
         Post post = new Post(1L, 42L, "test", Instant.now(), LocalDate.now());
-        when(userRepo.findById(42L)).thenReturn(Optional.of(new User(42L, "u", "h", Instant.now())));
         when(postRepo.save(42L, "test")).thenReturn(post);
 
         Post result = service.create(42L, "test");
@@ -39,6 +40,21 @@ public class PostServiceImplTest {
         verify(postRepo).save(42L, "test");
     }
 
+    @Test
+    public void create_unknownAuthor_throwsNotFound() {
+        when(postRepo.save(42L, "test")).thenThrow(new UnknownAuthorException(42L));
+
+        assertThrows(NotFoundResponse.class, () -> service.create(42L, "test"));
+    }
+
+    @Test
+    public void createAll_unknownAuthor_throwsNotFound() {
+        List<NewPost> posts = List.of(new NewPost("a", null));
+        when(postRepo.saveAll(42L, posts)).thenThrow(new UnknownAuthorException(42L));
+
+        assertThrows(NotFoundResponse.class, () -> service.createAll(42L, posts));
+    }
+
     @Test
     public void findById_delegatesToRepository() {
         Post post = new Post(1L, 42L, "test", Instant.now(), LocalDate.now());
@@ -64,21 +80,34 @@ public class PostServiceImplTest {
         assertEquals(posts, result);
     }
 
+    @Test
+    public void findPage_delegatesToRepository() {
+        PostCursor cursor = new PostCursor(Instant.now(), 5L);
+        List<Post> posts = List.of(new Post(4L, 42L, "test", Instant.now(), LocalDate.now()));
+        when(postRepo.findPage(cursor, 10)).thenReturn(posts);
+
+        List<Post> result = service.findPage(cursor, 10);
+
+        assertEquals(posts, result);
+        verify(postRepo).findPage(cursor, 10);
+    }
+
     @Test
     public void delete_delegatesToRepository() {
-        service.delete(1L);
+        when(postRepo.delete(1L, 42L, Precondition.ifMatch(3))).thenReturn(WriteResult.failed(WriteResult.Status.FORBIDDEN));
 
-        verify(postRepo).delete(1L);
+        assertEquals(WriteResult.Status.FORBIDDEN, service.delete(1L, 42L, Precondition.ifMatch(3)).status());
+        verify(postRepo).delete(1L, 42L, Precondition.ifMatch(3));
     }
 
     @Test
     public void updateContent_delegatesToRepository() {
         Post post = new Post(1L, 42L, "updated", Instant.now(), LocalDate.now());
-        when(postRepo.updateContent(1L, "updated")).thenReturn(post);
+        when(postRepo.updateContent(1L, 42L, "updated", Precondition.NONE)).thenReturn(WriteResult.ok(post));
 
-        Post result = service.updateContent(1L, "updated");
+        WriteResult result = service.updateContent(1L, 42L, "updated", Precondition.NONE);
 
-        assertEquals(post, result);
-        verify(postRepo).updateContent(1L, "updated");
+        assertEquals(WriteResult.ok(post), result);
+        verify(postRepo).updateContent(1L, 42L, "updated", Precondition.NONE);
     }
 }
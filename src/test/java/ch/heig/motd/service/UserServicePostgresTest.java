@@ -1,7 +1,13 @@
 package ch.heig.motd.service;
 
+import ch.heig.motd.auth.BCryptPasswordHasher;
+import ch.heig.motd.auth.DelegatingPasswordHasher;
+import ch.heig.motd.auth.Pbkdf2PasswordHasher;
+import ch.heig.motd.concurrent.BoundedExecutor;
+import ch.heig.motd.concurrent.OverloadedException;
 import ch.heig.motd.model.User;
 import ch.heig.motd.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mindrot.jbcrypt.BCrypt;
@@ -36,5 +42,49 @@ public class UserServicePostgresTest {
         assertTrue(service.verifyPassword(u, pw));
         assertFalse(service.verifyPassword(u, "bad"));
     }
-}
 
+    @Test
+    public void register_usesConfiguredCost() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service = new UserServicePostgres(repo, new BoundedExecutor("password", 1, 1), new BCryptPasswordHasher(4), registry);
+        when(repo.findByUsername("amy")).thenReturn(Optional.empty());
+
+        service.register("amy", "pwd");
+
+        verify(repo).save(eq("amy"), startsWith("$2a$04$"));
+        assertEquals(1, registry.get("password.operations").tag("op", "hash").timer().count());
+    }
+
+    @Test
+    public void verifyPassword_poolSaturated_throwsOverloaded() {
+        BoundedExecutor executor = mock(BoundedExecutor.class);
+        when(executor.call(any())).thenThrow(new OverloadedException("password is overloaded", 1));
+        service = new UserServicePostgres(repo, executor, new BCryptPasswordHasher(4), new SimpleMeterRegistry());
+        User u = new User(2L, "joe", "hash", Instant.now());
+
+        assertThrows(OverloadedException.class, () -> service.verifyPassword(u, "pwd"));
+    }
+
+    @Test
+    public void verifyPassword_outdatedHash_isUpgraded() {
+        service = new UserServicePostgres(repo, new BoundedExecutor("password", 1, 1),
+            DelegatingPasswordHasher.of("pbkdf2", 4, 1000), new SimpleMeterRegistry());
+        User u = new User(2L, "joe", BCrypt.hashpw("secret", BCrypt.gensalt(4)), Instant.now());
+
+        assertTrue(service.verifyPassword(u, "secret"));
+
+        verify(repo).updatePasswordHash(eq(2L), startsWith("$pbkdf2-sha256$1000$"));
+    }
+
+    @Test
+    public void verifyPassword_currentHash_isNotUpgraded() {
+        service = new UserServicePostgres(repo, new BoundedExecutor("password", 1, 1),
+            DelegatingPasswordHasher.of("pbkdf2", 4, 1000), new SimpleMeterRegistry());
+        User u = new User(2L, "joe", new Pbkdf2PasswordHasher(1000).hash("secret"), Instant.now());
+
+        assertTrue(service.verifyPassword(u, "secret"));
+        assertFalse(service.verifyPassword(u, "bad"));
+
+        verify(repo, never()).updatePasswordHash(anyLong(), anyString());
+    }
+}